@@ -1,31 +1,56 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.validation.Create;
 import ru.yandex.practicum.filmorate.validation.Update;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/films")
 public class FilmController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("")
-    @ResponseStatus(HttpStatus.OK)
-    public List<Film> getAllFilms() {
-        return filmService.getAllFilms();
+    public ResponseEntity<List<Film>> getAllFilms(
+            @RequestParam(required = false, defaultValue = "0") long afterId,
+            @RequestParam(required = false, defaultValue = "100") int limit
+    ) {
+        List<Film> films = filmService.getFilms(afterId, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!films.isEmpty()) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(films.get(films.size() - 1).getId()));
+        }
+        return response.body(films);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportFilms() {
+        StreamingResponseBody body = out -> filmService.exportFilms(film -> writeLine(out, film));
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
 
     @GetMapping("/{id}")
@@ -40,6 +65,12 @@ public class FilmController {
         return filmService.createNewFilm(film);
     }
 
+    @PostMapping("/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<Long> createFilms(@RequestBody List<Film> films) {
+        return filmService.createFilms(films);
+    }
+
     @PutMapping
     @ResponseStatus(HttpStatus.OK)
     public Film updateFilm(@Validated(Update.class) @RequestBody Film film) {
@@ -92,4 +123,13 @@ public class FilmController {
     ) {
         return filmService.searchFilm(query, by);
     }
-}
\ No newline at end of file
+
+    private void writeLine(OutputStream out, Film film) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(film));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
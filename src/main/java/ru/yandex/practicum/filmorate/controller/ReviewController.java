@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.model.Review;
@@ -15,6 +16,9 @@ import java.util.List;
 @RequestMapping("reviews")
 public class ReviewController {
 
+    private static final String NEXT_USEFUL_HEADER = "X-Next-After-Useful";
+    private static final String NEXT_ID_HEADER = "X-Next-After-Id";
+
     private final ReviewService reviewService;
 
     @Autowired
@@ -40,11 +44,20 @@ public class ReviewController {
         return reviewService.updateReview(review);
     }
 
+    // Without a film the listing is paged by (useful, id); the next page cursor is returned in headers.
     @GetMapping()
-    @ResponseStatus(HttpStatus.OK)
-    public List<Review> getReviews(@RequestParam(required = false) Long filmId,
-                                   @RequestParam(defaultValue = "10") int count) {
-        return reviewService.getReviews(filmId, count);
+    public ResponseEntity<List<Review>> getReviews(@RequestParam(required = false) Long filmId,
+                                                   @RequestParam(defaultValue = "10") int count,
+                                                   @RequestParam(required = false) Long afterUseful,
+                                                   @RequestParam(required = false) Long afterId) {
+        List<Review> reviews = reviewService.getReviews(filmId, count, afterUseful, afterId);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (filmId == null && !reviews.isEmpty()) {
+            Review last = reviews.get(reviews.size() - 1);
+            response.header(NEXT_USEFUL_HEADER, String.valueOf(last.getUseful()));
+            response.header(NEXT_ID_HEADER, String.valueOf(last.getReviewId()));
+        }
+        return response.body(reviews);
     }
 
     @PutMapping("/{id}/like/{userId}")
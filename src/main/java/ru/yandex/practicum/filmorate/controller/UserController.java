@@ -2,12 +2,15 @@ package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.FeedStreamService;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.validation.Create;
@@ -22,12 +25,19 @@ public class UserController {
     private final UserService userService;
     private final FeedService feedService;
     private final FilmService filmService;
+    private final FeedStreamService feedStreamService;
 
     @Autowired
-    public UserController(UserService userService, FeedService feedService, FilmService filmService) {
+    public UserController(
+            UserService userService,
+            FeedService feedService,
+            FilmService filmService,
+            FeedStreamService feedStreamService
+    ) {
         this.userService = userService;
         this.feedService = feedService;
         this.filmService = filmService;
+        this.feedStreamService = feedStreamService;
     }
 
     @GetMapping
@@ -78,6 +88,15 @@ public class UserController {
         return userService.getUserFriends(id);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    @ResponseStatus(HttpStatus.OK)
+    public List<User> getFriendSuggestions(
+            @PathVariable long id,
+            @RequestParam(required = false, defaultValue = "10") int limit
+    ) {
+        return userService.getFriendSuggestions(id, limit);
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
     @ResponseStatus(HttpStatus.OK)
     public List<User> getCommonFriends(@PathVariable long id, @PathVariable long otherId) {
@@ -92,13 +111,38 @@ public class UserController {
 
     @GetMapping("/{id}/feed")
     @ResponseStatus(HttpStatus.OK)
-    public List<Feed> getNewsFeed(@PathVariable long id) {
-        return feedService.getNewsFeed(id);
+    public List<Feed> getNewsFeed(
+            @PathVariable long id,
+            @RequestParam(required = false) Long afterEventId,
+            @RequestParam(required = false) Long beforeEventId,
+            @RequestParam(required = false, defaultValue = "100") int limit
+    ) {
+        return feedService.getNewsFeed(id, afterEventId, beforeEventId, limit);
+    }
+
+    @GetMapping("/{id}/feed/friends")
+    @ResponseStatus(HttpStatus.OK)
+    public List<Feed> getFriendsFeed(
+            @PathVariable long id,
+            @RequestParam(required = false, defaultValue = "100") int limit
+    ) {
+        return userService.getFriendsFeed(id, limit);
+    }
+
+    @GetMapping(value = "/{id}/feed/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamNewsFeed(
+            @PathVariable long id,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId
+    ) {
+        return feedStreamService.subscribe(id, lastEventId);
     }
 
     @GetMapping("/{id}/recommendations")
     @ResponseStatus(HttpStatus.OK)
-    public List<Film> getRecommendation(@PathVariable long id) {
-        return filmService.getRecommendation(id);
+    public List<Film> getRecommendation(
+            @PathVariable long id,
+            @RequestParam(required = false, defaultValue = "10") int count
+    ) {
+        return filmService.getRecommendation(id, count);
     }
 }
\ No newline at end of file
@@ -2,27 +2,56 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.storage.films.DirectorSearchIndex;
+import ru.yandex.practicum.filmorate.storage.films.FilmCache;
 import ru.yandex.practicum.filmorate.storage.films.DirectorStorage;
+import ru.yandex.practicum.filmorate.util.LruCache;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class DirectorService {
     private final DirectorStorage directorStorage;
+    private final DirectorSearchIndex directorSearchIndex;
+    private final LruCache<Long, Director> directorCache;
+    private final FilmCache filmCache;
 
     @Autowired
-    public DirectorService(DirectorStorage directorStorage) {
+    public DirectorService(
+            DirectorStorage directorStorage,
+            DirectorSearchIndex directorSearchIndex,
+            FilmCache filmCache,
+            @Value("${filmorate.directors.cache-size:1000}") int cacheSize
+    ) {
         this.directorStorage = directorStorage;
+        this.directorSearchIndex = directorSearchIndex;
+        this.filmCache = filmCache;
+        this.directorCache = new LruCache<>(cacheSize);
     }
 
     public Director getDirectorById(long id) {
-        return directorStorage.loadDirector(id)
-                .orElseThrow(() -> new NotFoundException("**Director** #" + id + " not found."));
+        Director cached = directorCache.get(id);
+        if (cached == null) {
+            long stamp = directorCache.stamp();
+            cached = directorStorage.loadDirector(id)
+                    .orElseThrow(() -> new NotFoundException("**Director** #" + id + " not found."));
+            directorCache.put(id, cached, stamp);
+        }
+        return copyOf(cached);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.cache.stats-interval-ms:600000}")
+    public void logCacheStats() {
+        log.debug("Director cache: {} directors, {} hits, {} misses, {} evictions.", directorCache.size(),
+                directorCache.getHits(), directorCache.getMisses(), directorCache.getEvictions());
     }
 
     public List<Director> getDirectorsByFilmId(long id) {
@@ -31,6 +60,8 @@ public class DirectorService {
 
     public Director createNewDirector(Director director) {
         long id = directorStorage.saveDirector(director);
+        directorCache.invalidate(id);
+        directorSearchIndex.putDirector(id, director.getName());
         log.debug("Creating new director {}.", director);
         return getDirectorById(id);
     }
@@ -40,25 +71,50 @@ public class DirectorService {
                 .orElseThrow(() -> new NotFoundException("**Director** #" + director.getId() + " not found."));
         loadedDirector.setName(director.getName());
         directorStorage.updateDirector(loadedDirector);
+        directorCache.invalidate(loadedDirector.getId());
+        invalidateFilmsOf(loadedDirector.getId());
+        directorSearchIndex.putDirector(loadedDirector.getId(), loadedDirector.getName());
         log.debug("Updating director {}.", loadedDirector);
         return getDirectorById(director.getId());
     }
 
     public void deleteDirector(long id) {
         directorStorage.deleteDirector(id);
+        directorCache.invalidate(id);
+        invalidateFilmsOf(id);
+        directorSearchIndex.removeDirector(id);
     }
 
     public void addDirectorsToFilm(long id, List<Director> directors) {
         directorStorage.saveDirectorsToFilm(id, directors);
+        directorSearchIndex.setFilmDirectors(id, directorIds(directors));
     }
 
     public void updateFilmDirectors(long id, List<Director> directors) {
         directorStorage.deleteDirectorsOfFilm(id);
         directorStorage.saveDirectorsToFilm(id, directors);
+        directorSearchIndex.setFilmDirectors(id, directorIds(directors));
     }
 
     public void deleteFilmDirectors(long id) {
         directorStorage.deleteDirectorsOfFilm(id);
+        directorSearchIndex.removeFilm(id);
+    }
+
+    public void indexFilmDirectors(long id, List<Director> directors) {
+        directorSearchIndex.setFilmDirectors(id, directorIds(directors));
+    }
+
+    public void forgetFilm(long filmId) {
+        directorSearchIndex.removeFilm(filmId);
+    }
+
+    public long[] searchFilmsByDirector(String query) {
+        return directorSearchIndex.searchFilmsByDirector(query);
+    }
+
+    public boolean isSearchReady() {
+        return directorSearchIndex.isReady();
     }
 
     public List<Director> getAllDirectors() {
@@ -66,4 +122,23 @@ public class DirectorService {
         log.debug("Loading {} directors.", directors.size());
         return directors;
     }
+
+    private void invalidateFilmsOf(long directorId) {
+        if (directorSearchIndex.isReady()) {
+            filmCache.invalidate(directorSearchIndex.getFilmIds(directorId));
+        } else {
+            filmCache.clear();
+        }
+    }
+
+    private static Director copyOf(Director director) {
+        Director copy = new Director();
+        copy.setId(director.getId());
+        copy.setName(director.getName());
+        return copy;
+    }
+
+    private static List<Long> directorIds(List<Director> directors) {
+        return directors.stream().map(Director::getId).distinct().collect(Collectors.toList());
+    }
 }
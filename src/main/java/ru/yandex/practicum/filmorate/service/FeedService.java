@@ -1,31 +1,152 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.storage.feeds.FeedStorage;
 import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.feeds.FeedWriter;
 
-import java.util.List;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
 
 @Slf4j
 @Service
 public class FeedService {
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final FeedStorage feedStorage;
+    private final FeedWriter feedWriter;
+    private final int retentionDays;
 
-    public FeedService(FeedStorage feedStorage) {
+    public FeedService(
+            FeedStorage feedStorage,
+            FeedWriter feedWriter,
+            @Value("${filmorate.feed.retention-days:90}") int retentionDays
+    ) {
         this.feedStorage = feedStorage;
+        this.feedWriter = feedWriter;
+        this.retentionDays = retentionDays;
+    }
+
+    @Scheduled(cron = "${filmorate.feed.compaction-cron:0 30 3 * * *}")
+    public void compactFeeds() {
+        feedWriter.flush();
+        int archived = feedStorage.archiveFeeds(Instant.now().minus(retentionDays, ChronoUnit.DAYS));
+        log.debug("Moved {} feed events older than {} days to the archive.", archived, retentionDays);
     }
 
+    // Events of a rolled back transaction are never queued.
     public void saveFeed(long id, long entityId, EventType eventType, Operation operation){
-        feedStorage.saveFeed(id, entityId, eventType, operation);
-        log.debug("Event saved: User #{} {} {} #{}.",id,operation.toString().toLowerCase(),
+        Feed feed = Feed.builder()
+                .timestamp(System.currentTimeMillis())
+                .userId(id)
+                .eventType(eventType.name())
+                .operation(operation.name())
+                .entityId(entityId)
+                .build();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    feedWriter.submit(feed);
+                }
+            });
+        } else {
+            feedWriter.submit(feed);
+        }
+        log.debug("Event queued: User #{} {} {} #{}.",id,operation.toString().toLowerCase(),
                 eventType.toString().toLowerCase(), entityId );
     }
-    public List<Feed> getNewsFeed(long userId) {
-        List<Feed> feeds = feedStorage.getNewsFeed(userId);
+    public List<Feed> getNewsFeed(long userId, Long afterEventId, Long beforeEventId, int limit) {
+        feedWriter.flush();
+        List<Feed> feeds = feedStorage.getNewsFeed(
+                userId, afterEventId, beforeEventId, Math.max(1, Math.min(limit, MAX_PAGE_SIZE))
+        );
         log.debug("Loading {} events.", feeds.size());
         return feeds;
     }
+
+    // k-way merge: every friend is a cursor over its events, newest first, and only the top limit events are read.
+    // All cursors are seeded by one storage call. A drained cursor is refilled once with every event still needed,
+    // and only a friend with more than seedSize of the top events drains, so refills are bounded by limit / seedSize
+    // rather than by the number of friends.
+    public List<Feed> getNewestFeeds(long[] userIds, int limit) {
+        limit = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        if (userIds.length == 0) {
+            return new ArrayList<>();
+        }
+        feedWriter.flush();
+        int seedSize = Math.min(limit, Math.max(2, (limit + userIds.length - 1) / userIds.length));
+        Map<Long, List<Feed>> seeds = new HashMap<>();
+        List<Long> ids = new ArrayList<>(userIds.length);
+        for (long userId : userIds) {
+            ids.add(userId);
+        }
+        for (Feed feed : feedStorage.getNewestFeeds(ids, seedSize)) {
+            seeds.computeIfAbsent(feed.getUserId(), k -> new ArrayList<>()).add(feed);
+        }
+        PriorityQueue<FeedCursor> heap = new PriorityQueue<>(
+                Comparator.comparingLong((FeedCursor cursor) -> cursor.head().getEventId()).reversed()
+        );
+        for (Map.Entry<Long, List<Feed>> seed : seeds.entrySet()) {
+            heap.add(new FeedCursor(seed.getKey(), seed.getValue(), seed.getValue().size() < seedSize));
+        }
+        List<Feed> feeds = new ArrayList<>(limit);
+        while (feeds.size() < limit && !heap.isEmpty()) {
+            FeedCursor cursor = heap.poll();
+            Feed feed = cursor.next();
+            feeds.add(feed);
+            if (!cursor.hasNext() && !cursor.exhausted) {
+                int pageSize = limit - feeds.size();
+                if (pageSize > 0) {
+                    List<Feed> page = feedStorage.getNewsFeed(cursor.userId, null, feed.getEventId(), pageSize);
+                    Collections.reverse(page);
+                    cursor.refill(page, page.size() < pageSize);
+                }
+            }
+            if (cursor.hasNext()) {
+                heap.add(cursor);
+            }
+        }
+        log.debug("Merged {} events of {} users.", feeds.size(), userIds.length);
+        return feeds;
+    }
+
+    private static class FeedCursor {
+        private final long userId;
+        private List<Feed> feeds;
+        private int position;
+        private boolean exhausted;
+
+        private FeedCursor(long userId, List<Feed> feeds, boolean exhausted) {
+            this.userId = userId;
+            this.feeds = feeds;
+            this.exhausted = exhausted;
+        }
+
+        private Feed head() {
+            return feeds.get(position);
+        }
+
+        private Feed next() {
+            return feeds.get(position++);
+        }
+
+        private boolean hasNext() {
+            return position < feeds.size();
+        }
+
+        private void refill(List<Feed> page, boolean exhausted) {
+            this.feeds = page;
+            this.position = 0;
+            this.exhausted = exhausted;
+        }
+    }
 }
@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.feeds.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.feeds.FeedWriter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+@Service
+public class FeedStreamService {
+
+    private static final int REPLAY_PAGE_SIZE = 1000;
+
+    private final UserService userService;
+    private final FeedStorage feedStorage;
+    private final FeedWriter feedWriter;
+    private final int bufferSize;
+    private final long timeoutMs;
+    private final ExecutorService executor;
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FeedStreamService(
+            UserService userService,
+            FeedStorage feedStorage,
+            FeedWriter feedWriter,
+            @Value("${filmorate.feed.stream.buffer-size:256}") int bufferSize,
+            @Value("${filmorate.feed.stream.timeout-ms:3600000}") long timeoutMs,
+            @Value("${filmorate.feed.stream.threads:4}") int threads
+    ) {
+        this.userService = userService;
+        this.feedStorage = feedStorage;
+        this.feedWriter = feedWriter;
+        this.bufferSize = bufferSize;
+        this.timeoutMs = timeoutMs;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "feed-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        feedWriter.addListener(this::publish);
+    }
+
+    // The subscriber is registered before the replay, so no event falls between the two; duplicates are skipped by id.
+    public SseEmitter subscribe(long userId, Long lastEventId) {
+        userService.checkUserExists(userId);
+        Subscriber subscriber = new Subscriber(userId, new SseEmitter(timeoutMs));
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+        subscriber.emitter.onError(e -> unsubscribe(subscriber));
+        subscribers.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        executor.execute(() -> {
+            if (lastEventId != null) {
+                replay(subscriber, lastEventId);
+            }
+            subscriber.draining.set(false);
+            subscriber.scheduleDrain();
+        });
+        log.debug("User #{} subscribed to the feed from event #{}.", userId, lastEventId);
+        return subscriber.emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+        subscribers.clear();
+    }
+
+    private void publish(Feed feed) {
+        Set<Subscriber> userSubscribers = subscribers.get(feed.getUserId());
+        if (userSubscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : userSubscribers) {
+            if (subscriber.buffer.offer(feed)) {
+                subscriber.scheduleDrain();
+            } else {
+                log.debug("Closing slow feed subscriber of user #{}.", subscriber.userId);
+                unsubscribe(subscriber);
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    private void replay(Subscriber subscriber, long lastEventId) {
+        feedWriter.flush();
+        long afterEventId = lastEventId;
+        List<Feed> page;
+        do {
+            page = feedStorage.getNewsFeed(subscriber.userId, afterEventId, null, REPLAY_PAGE_SIZE);
+            for (Feed feed : page) {
+                if (!subscriber.send(feed)) {
+                    return;
+                }
+            }
+            if (!page.isEmpty()) {
+                afterEventId = page.get(page.size() - 1).getEventId();
+            }
+        } while (page.size() == REPLAY_PAGE_SIZE);
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.userId, (k, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private class Subscriber {
+        private final long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Feed> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean(true);
+        private volatile long lastSentEventId;
+
+        private Subscriber(long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private void scheduleDrain() {
+            if (!buffer.isEmpty() && draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            Feed feed;
+            while ((feed = buffer.poll()) != null) {
+                if (!send(feed)) {
+                    return;
+                }
+            }
+            draining.set(false);
+            scheduleDrain();
+        }
+
+        private boolean send(Feed feed) {
+            if (feed.getEventId() <= lastSentEventId) {
+                return true;
+            }
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(feed.getEventId()))
+                        .name("feed")
+                        .data(feed, MediaType.APPLICATION_JSON));
+                lastSentEventId = feed.getEventId();
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                unsubscribe(this);
+                return false;
+            }
+        }
+    }
+}
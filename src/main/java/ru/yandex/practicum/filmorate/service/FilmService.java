@@ -2,30 +2,78 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.exception.BadRequestException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.films.FilmCache;
+import ru.yandex.practicum.filmorate.storage.films.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.films.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.films.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.films.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.films.GenreDictionary;
+import ru.yandex.practicum.filmorate.storage.films.MpaDictionary;
+import ru.yandex.practicum.filmorate.util.LongArrays;
+import ru.yandex.practicum.filmorate.validation.Create;
 
-import java.util.List;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class FilmService {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final FilmStorage filmStorage;
     private final UserService userService;
     private final GenreService genreService;
     private final DirectorService directorService;
     private final FeedService feedService;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmSearchIndex searchIndex;
+    private final FilmLikesIndex likesIndex;
+    private final FilmCache filmCache;
+    private final MpaDictionary mpaDictionary;
+    private final GenreDictionary genreDictionary;
+    private final Validator validator;
+
+    @Value("${filmorate.films.batch.max-size:1000}")
+    private int maxBatchSize;
 
 
     public Film getFilmById(long id) {
-        return filmStorage.loadFilm(id)
+        Film cached = filmCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = filmCache.stamp();
+        Film film = filmStorage.loadFilm(id)
                 .orElseThrow(() -> new NotFoundException("**Film** #" + id + " not found."));
+        filmCache.put(film, stamp);
+        return film;
+    }
+
+    public void checkFilmExists(long id) {
+        if (!filmCache.contains(id) && !filmStorage.existsFilm(id)) {
+            throw new NotFoundException("**Film** #" + id + " not found.");
+        }
     }
 
     public Film createNewFilm(Film film) {
@@ -37,10 +85,81 @@ public class FilmService {
             directorService.addDirectorsToFilm(filmId, film.getDirectors());
         }
         Film savedFilm = getFilmById(filmId);
+        popularityIndex.putFilm(savedFilm);
+        searchIndex.putFilm(filmId, savedFilm.getName());
         log.debug("Creating new film {}.", savedFilm);
         return savedFilm;
     }
 
+    // Indexes are updated from the request bodies, so the created films are not read back.
+    @Transactional
+    public List<Long> createFilms(List<Film> films) {
+        if (films.size() > maxBatchSize) {
+            throw new BadRequestException("A batch holds at most " + maxBatchSize + " films.");
+        }
+        Set<Long> directorIds = new HashSet<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            if (film == null) {
+                throw new BadRequestException("Film at position " + i + " is missing.");
+            }
+            Set<ConstraintViolation<Film>> violations = validator.validate(film, Create.class);
+            if (!violations.isEmpty()) {
+                throw new ConstraintViolationException("Film at position " + i + " is invalid.", violations);
+            }
+            checkReferences(film, i, directorIds);
+        }
+        for (long directorId : directorIds) {
+            directorService.getDirectorById(directorId);
+        }
+        if (films.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = filmStorage.saveFilms(films);
+        afterCommit(() -> {
+            for (int i = 0; i < films.size(); i++) {
+                Film film = films.get(i);
+                film.setId(ids.get(i));
+                popularityIndex.putFilm(film);
+                searchIndex.putFilm(film.getId(), film.getName());
+                if (film.getDirectors() != null && film.getDirectors().size() > 0) {
+                    directorService.indexFilmDirectors(film.getId(), film.getDirectors());
+                }
+            }
+        });
+        log.debug("Creating {} films in a batch.", ids.size());
+        return ids;
+    }
+
+    // Unknown ids would otherwise fail the batch insert on a foreign key. Directors are collected and checked once.
+    private void checkReferences(Film film, int position, Set<Long> directorIds) {
+        Long mpaId = film.getMpa().getId();
+        if (mpaId == null) {
+            throw new BadRequestException("Film at position " + position + " has no MPA id.");
+        }
+        if (!mpaDictionary.contains(mpaId)) {
+            throw new NotFoundException("MPA #" + mpaId + " not found.");
+        }
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                if (genre == null || genre.getId() == null) {
+                    throw new BadRequestException("Film at position " + position + " has a genre without id.");
+                }
+                if (!genreDictionary.contains(genre.getId())) {
+                    throw new NotFoundException("Genre #" + genre.getId() + " not found");
+                }
+            }
+        }
+        if (film.getDirectors() != null) {
+            for (Director director : film.getDirectors()) {
+                if (director == null || director.getId() == null) {
+                    throw new BadRequestException("Film at position " + position + " has a director without id.");
+                }
+                directorIds.add(director.getId());
+            }
+        }
+    }
+
     public Film updateFilm(Film film) {
         Film updatedFilm = getFilmById(film.getId());
         if (film.getDescription() == null) {
@@ -71,49 +190,92 @@ public class FilmService {
             directorService.updateFilmDirectors(film.getId(), film.getDirectors());
         }
         filmStorage.updateFilm(film);
+        filmCache.invalidate(film.getId());
         Film savedFilm = getFilmById(film.getId());
+        popularityIndex.putFilm(savedFilm);
+        searchIndex.putFilm(savedFilm.getId(), savedFilm.getName());
         log.debug("Updating film {}.", savedFilm);
         return savedFilm;
     }
 
-    public List<Film> getAllFilms() {
-        List<Film> films = filmStorage.loadFilms();
-        log.debug("Loading {} films.", films.size());
+    public List<Film> getFilms(long afterId, int limit) {
+        List<Film> films = filmStorage.loadFilms(afterId, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        log.debug("Loading {} films after #{}.", films.size(), afterId);
         return films;
     }
 
+    public void exportFilms(Consumer<Film> consumer) {
+        AtomicLong exported = new AtomicLong();
+        filmStorage.exportFilms(film -> {
+            consumer.accept(film);
+            exported.incrementAndGet();
+        });
+        log.debug("Exported {} films.", exported.get());
+    }
+
+    @Transactional
     public void addLikeFromUser(long filmId, long userId) {
-        getFilmById(filmId);
-        userService.getUserById(userId);
+        checkFilmExists(filmId);
+        userService.checkUserExists(userId);
         if (filmStorage.hasFilmLikeFromUser(filmId, userId)) {
             log.debug("Attempting to create an existing like for film #{} from user #{}.", filmId, userId);
         } else {
             filmStorage.saveLikeFromUser(filmId, userId);
             log.debug("Creating like for film #{} from user #{}.", filmId, userId);
             feedService.saveFeed(userId, filmId, EventType.LIKE, Operation.ADD);
+            afterCommit(() -> {
+                popularityIndex.refreshLikes(filmId);
+                likesIndex.refreshLike(filmId, userId);
+            });
         }
     }
 
+    @Transactional
     public void deleteLikeFromUser(long filmId, long userId) {
-        getFilmById(filmId);
-        userService.getUserById(userId);
+        checkFilmExists(filmId);
+        userService.checkUserExists(userId);
         if (filmStorage.hasFilmLikeFromUser(filmId, userId)) {
             filmStorage.deleteLikeFromUser(filmId, userId);
             log.debug("Deleting like from film #{} from user #{}.", filmId, userId);
             feedService.saveFeed(userId, filmId, EventType.LIKE, Operation.REMOVE);
+            afterCommit(() -> {
+                popularityIndex.refreshLikes(filmId);
+                likesIndex.refreshLike(filmId, userId);
+            });
         } else {
             log.debug("Attempting to delete a non-existent like for film #{} from user #{}", filmId, userId);
         }
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${filmorate.likes.reconcile-cron:0 0 4 * * *}")
+    public void reconcileLikesCounters() {
+        int updated = filmStorage.rebuildLikesCounters();
+        if (updated > 0 && popularityIndex.isReady()) {
+            popularityIndex.load();
+        }
+        log.debug("Reconciled likes counters of {} films.", updated);
+    }
+
     public List<Film> getPopularFilms(long count, Long genreId, Integer year) {
-        List<Film> popular = filmStorage.loadPopularFilms(count, genreId, year);
+        count = Math.max(1, Math.min(count, MAX_PAGE_SIZE));
+        List<Film> popular;
+        if (popularityIndex.isReady()) {
+            popular = loadFilmsByIds(popularityIndex.getPopularFilmIds(count, genreId, year));
+        } else {
+            popular = filmStorage.loadPopularFilms(count, genreId, year);
+        }
         log.debug("Returning {} popular films.", popular.size());
         return popular;
     }
 
     public void deleteFilm(long filmId) {
         filmStorage.deleteFilm(filmId);
+        filmCache.invalidate(filmId);
+        popularityIndex.removeFilm(filmId);
+        searchIndex.removeFilm(filmId);
+        likesIndex.removeFilm(filmId);
+        directorService.forgetFilm(filmId);
         log.debug("Deleting {} film.", filmId);
     }
 
@@ -134,20 +296,96 @@ public class FilmService {
     }
 
     public List<Film> getCommonFilms(long userId, long friendId) {
-        List<Film> common = filmStorage.getCommonFilms(userId, friendId);
+        List<Film> common;
+        if (likesIndex.isReady() && popularityIndex.isReady()) {
+            common = loadFilmsByIds(popularityIndex.sortByPopularity(likesIndex.commonFilms(userId, friendId)));
+        } else {
+            common = filmStorage.getCommonFilms(userId, friendId);
+        }
         log.debug("Returning {} common films.", common.size());
         return common;
     }
 
     public List<Film> searchFilm(String query, String by) {
-        return filmStorage.searchFilm(query, by);
-
+        List<Film> films;
+        if (searchIndex.isReady() && directorService.isSearchReady() && popularityIndex.isReady()) {
+            films = loadFilmsByIds(popularityIndex.sortByPopularity(searchFilmIds(query, by)));
+        } else {
+            films = filmStorage.searchFilm(query, by);
+        }
+        log.debug("Found {} films by {} for \"{}\".", films.size(), by, query);
+        return films;
     }
 
-    public List<Film> getRecommendation(long id) {
-        userService.getUserById(id);
-        List<Film> recommendationFilm = filmStorage.getRecommendation(id);
+    public List<Film> getRecommendation(long id, int count) {
+        count = Math.max(1, Math.min(count, MAX_PAGE_SIZE));
+        userService.checkUserExists(id);
+        List<Film> recommendationFilm;
+        if (likesIndex.isReady()) {
+            recommendationFilm = loadFilmsByIds(likesIndex.recommendFilms(id, count));
+        } else {
+            recommendationFilm = filmStorage.getRecommendation(id);
+            if (recommendationFilm.size() > count) {
+                recommendationFilm = recommendationFilm.subList(0, count);
+            }
+        }
         log.debug("Recommendation {} films.", recommendationFilm.size());
         return recommendationFilm;
     }
+
+    private long[] searchFilmIds(String query, String by) {
+        switch (by) {
+            case "title":
+                return searchIndex.searchByTitle(query);
+            case "director":
+                return directorService.searchFilmsByDirector(query);
+            case "title,director":
+            case "director,title":
+                return LongArrays.union(searchIndex.searchByTitle(query), directorService.searchFilmsByDirector(query));
+            default:
+                return LongArrays.EMPTY;
+        }
+    }
+
+    // Cached films are served from memory; only the misses are loaded, in one storage call.
+    private List<Film> loadFilmsByIds(List<Long> ids) {
+        Map<Long, Film> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Film cached = filmCache.get(id);
+            if (cached == null) {
+                missing.add(id);
+            } else {
+                found.put(id, cached);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long stamp = filmCache.stamp();
+            for (Film film : filmStorage.loadFilmsByIds(missing)) {
+                filmCache.put(film, stamp);
+                found.put(film.getId(), film);
+            }
+        }
+        List<Film> films = new ArrayList<>(found.size());
+        for (Long id : ids) {
+            Film film = found.get(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        return films;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.films.GenreDictionary;
 import ru.yandex.practicum.filmorate.storage.films.GenreStorage;
 
 import java.util.List;
@@ -15,14 +16,16 @@ import java.util.Optional;
 public class GenreService {
 
     private final GenreStorage genreStorage;
+    private final GenreDictionary genreDictionary;
 
     @Autowired
-    public GenreService(GenreStorage genreStorage) {
+    public GenreService(GenreStorage genreStorage, GenreDictionary genreDictionary) {
         this.genreStorage = genreStorage;
+        this.genreDictionary = genreDictionary;
     }
 
     public Genre getGenreById(long id) {
-        Optional<Genre> genre = genreStorage.loadGenreById(id);
+        Optional<Genre> genre = genreDictionary.get(id);
         if (genre.isPresent()) {
             log.debug("Loading {}.", genre.get());
             return genre.get();
@@ -49,7 +52,7 @@ public class GenreService {
     }
 
     public List<Genre> getAllGenres() {
-        List<Genre> genre = genreStorage.loadAllGenres();
+        List<Genre> genre = genreDictionary.getAll();
         log.debug("Loading {} genres.", genre.size());
         return genre;
     }
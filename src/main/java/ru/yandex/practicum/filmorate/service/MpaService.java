@@ -5,7 +5,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Mpa;
-import ru.yandex.practicum.filmorate.storage.films.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.films.MpaDictionary;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,15 +14,15 @@ import java.util.Optional;
 @Service
 public class MpaService {
 
-    private final MpaStorage mpaStorage;
+    private final MpaDictionary mpaDictionary;
 
     @Autowired
-    public MpaService(MpaStorage mpaStorage) {
-        this.mpaStorage = mpaStorage;
+    public MpaService(MpaDictionary mpaDictionary) {
+        this.mpaDictionary = mpaDictionary;
     }
 
     public Mpa getMpaById(long id) {
-        Optional<Mpa> mpa = mpaStorage.loadMpaById(id);
+        Optional<Mpa> mpa = mpaDictionary.get(id);
         if (mpa.isPresent()) {
             log.debug("Loading {}.", mpa.get());
             return mpa.get();
@@ -32,7 +32,7 @@ public class MpaService {
     }
 
     public List<Mpa> getAllMpa() {
-        List<Mpa> mpa = mpaStorage.loadAllMpa();
+        List<Mpa> mpa = mpaDictionary.getAll();
         log.debug("Loading {} MPA.", mpa.size());
         return mpa;
     }
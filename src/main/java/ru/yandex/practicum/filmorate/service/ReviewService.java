@@ -2,7 +2,11 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.model.EventType;
@@ -14,6 +18,8 @@ import java.util.List;
 @Slf4j
 @Service
 public class ReviewService {
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final ReviewStorage reviewStorage;
     private final FeedService feedService;
 
@@ -44,10 +50,10 @@ public class ReviewService {
         return savedReview;
     }
 
-    public List<Review> getReviews(Long filmId, int count) {
+    public List<Review> getReviews(Long filmId, int count, Long afterUseful, Long afterId) {
         List<Review> reviews;
         if (filmId == null) {
-            reviews = reviewStorage.loadReviews();
+            reviews = reviewStorage.loadReviews(Math.max(1, Math.min(count, MAX_PAGE_SIZE)), afterUseful, afterId);
         } else {
             reviews = reviewStorage.loadReviewsByFilm(filmId, count);
         }
@@ -55,26 +61,37 @@ public class ReviewService {
         return reviews;
     }
 
+    @Transactional
     public void addLikeFromUser(long reviewId, long userId) {
-        reviewStorage.saveLikeFromUser(reviewId, userId);
+        reviewStorage.saveVoteFromUser(reviewId, userId, true);
         log.debug("Saved like for review #{} from user #{}.",  reviewId, userId);
     }
 
+    @Transactional
     public void addDislikeFromUser(long reviewId, long userId) {
-        reviewStorage.saveDislikeFromUser(reviewId, userId);
+        reviewStorage.saveVoteFromUser(reviewId, userId, false);
         log.debug("Saved dislike for review #{} from user #{}.",  reviewId, userId);
     }
 
+    @Transactional
     public void deleteLikeFromUser(long reviewId, long userId) {
-        reviewStorage.deleteLikeFromUser(reviewId, userId);
+        reviewStorage.deleteVoteFromUser(reviewId, userId, true);
         log.debug("Deleted like for review #{} from user #{}.",  reviewId, userId);
     }
 
+    @Transactional
     public void deleteDislikeFromUser(long reviewId, long userId) {
-        reviewStorage.deleteDislikeFromUser(reviewId, userId);
+        reviewStorage.deleteVoteFromUser(reviewId, userId, false);
         log.debug("Deleted dislike for review #{} from user #{}.",  reviewId, userId);
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${filmorate.reviews.reconcile-cron:0 15 4 * * *}")
+    public void reconcileUsefulScores() {
+        int updated = reviewStorage.rebuildUsefulScores();
+        log.debug("Reconciled useful scores of {} reviews.", updated);
+    }
+
     public void deleteReview(long reviewId) {
         Review review = getReviewById(reviewId);
         reviewStorage.deleteReview(reviewId);
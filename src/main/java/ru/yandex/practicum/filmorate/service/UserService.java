@@ -3,27 +3,54 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.films.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.storage.films.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.users.FriendshipGraph;
 import ru.yandex.practicum.filmorate.storage.users.FriendshipStatus;
 import ru.yandex.practicum.filmorate.storage.users.UserStorage;
+import ru.yandex.practicum.filmorate.storage.users.UserUniquenessFilter;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class UserService {
 
+    private static final int MAX_SUGGESTIONS = 1000;
+
     private final UserStorage userStorage;
     private final FeedService feedService;
+    private final FilmLikesIndex likesIndex;
+    private final FilmPopularityIndex popularityIndex;
+    private final FriendshipGraph friendshipGraph;
+    private final UserUniquenessFilter uniquenessFilter;
 
     @Autowired
-    public UserService(UserStorage userStorage, FeedService feedService) {
+    public UserService(
+            UserStorage userStorage,
+            FeedService feedService,
+            FilmLikesIndex likesIndex,
+            FilmPopularityIndex popularityIndex,
+            FriendshipGraph friendshipGraph,
+            UserUniquenessFilter uniquenessFilter
+    ) {
         this.userStorage = userStorage;
         this.feedService = feedService;
+        this.likesIndex = likesIndex;
+        this.popularityIndex = popularityIndex;
+        this.friendshipGraph = friendshipGraph;
+        this.uniquenessFilter = uniquenessFilter;
     }
 
     public User getUserById(long id) {
@@ -36,11 +63,18 @@ public class UserService {
         }
     }
 
+    public void checkUserExists(long id) {
+        if (!userStorage.existsUser(id)) {
+            throw new NotFoundException("User #" + id + " not found.");
+        }
+    }
+
     public User createNewUser(User user) {
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
         }
         User savedUser = getUserById(userStorage.saveUser(user));
+        uniquenessFilter.addUser(savedUser.getEmail(), savedUser.getLogin());
         log.debug("Creating {}.", savedUser);
         return savedUser;
     }
@@ -58,8 +92,10 @@ public class UserService {
         }
         userStorage.updateUser(user);
         User savedUser = getUserById(user.getId());
+        uniquenessFilter.addUser(savedUser.getEmail(), savedUser.getLogin());
+        uniquenessFilter.removeUser(updatedUser.getEmail(), updatedUser.getLogin());
         log.debug("Updating {}.", savedUser);
-        return getUserById(user.getId());
+        return savedUser;
     }
 
     public List<User> getAllUsers() {
@@ -68,38 +104,48 @@ public class UserService {
         return users;
     }
 
+    @Transactional
     public void addFriendship(long userId, long friendId) {
-        getUserById(userId);
-        getUserById(friendId);
-        if (userStorage.isExistFriendship(userId, friendId) || userStorage.isExistFriendship(friendId, userId)) {
+        checkUserExists(userId);
+        checkUserExists(friendId);
+        if (isExistFriendship(userId, friendId) || isExistFriendship(friendId, userId)) {
             log.debug("Attempting to create an existing request for user #{} from user #{}.", userId, friendId);
         } else {
             userStorage.saveFriendshipRequest(userId, friendId, FriendshipStatus.REQUEST);
+            afterCommit(() -> friendshipGraph.putFriendship(userId, friendId, false));
             log.debug("Creating friendship request for user #{} from user #{}.",  userId, friendId);
             feedService.saveFeed(userId, friendId, EventType.FRIEND, Operation.ADD);
         }
     }
 
+    @Transactional
     public void confirmFriendship(long userId, long friendId) {
-        getUserById(userId);
-        getUserById(friendId);
-        if (userStorage.isExistFriendship(userId, friendId)) {
+        checkUserExists(userId);
+        checkUserExists(friendId);
+        if (isExistFriendship(userId, friendId)) {
             userStorage.updateFriendshipStatus(userId, friendId, FriendshipStatus.ACCEPTED);
             userStorage.deleteFriendshipRequest(friendId, userId);
+            afterCommit(() -> {
+                friendshipGraph.putFriendship(userId, friendId, true);
+                friendshipGraph.removeFriendship(friendId, userId);
+            });
             log.debug("User #{} confirmed friendship request from user #{}.", userId, friendId);
-        } else if (userStorage.isExistFriendship(friendId, userId)) {
+        } else if (isExistFriendship(friendId, userId)) {
             userStorage.updateFriendshipStatus(friendId, userId, FriendshipStatus.ACCEPTED);
+            afterCommit(() -> friendshipGraph.putFriendship(friendId, userId, true));
             log.debug("User #{} confirmed friendship request of user #{}", userId, friendId);
         } else {
             log.debug("Attempting to confirm a non-existent request from user #{} to user #{}.", friendId, userId);
         }
     }
 
+    @Transactional
     public void refuseFriendship(long userId, long friendId) {
-        getUserById(userId);
-        getUserById(friendId);
-        if (userStorage.isExistFriendship(userId, friendId)) {
+        checkUserExists(userId);
+        checkUserExists(friendId);
+        if (isExistFriendship(userId, friendId)) {
             userStorage.deleteFriendshipRequest(userId, friendId);
+            afterCommit(() -> friendshipGraph.removeFriendship(userId, friendId));
             log.debug("User #{} refused friendship request from user #{}.", userId, friendId);
             feedService.saveFeed(userId, friendId, EventType.FRIEND, Operation.REMOVE);
         } else {
@@ -108,29 +154,92 @@ public class UserService {
     }
 
     public List<User> getUserFriends(long userI) {
-        getUserById(userI);
-        List<User> friends = userStorage.loadUserFriends(userI);
+        checkUserExists(userI);
+        List<User> friends = friendshipGraph.isReady()
+                ? loadUsers(friendshipGraph.getFriendIds(userI))
+                : userStorage.loadUserFriends(userI);
         log.debug("Returning {} friends.", friends.size());
         return friends;
     }
 
     public List<User> getCommonFriends(long userId, long otherUserId) {
-        List<User> friends = getUserFriends(userId);
-        friends.retainAll(getUserFriends(otherUserId));
+        checkUserExists(userId);
+        checkUserExists(otherUserId);
+        List<User> friends = friendshipGraph.isReady()
+                ? loadUsers(friendshipGraph.getCommonFriendIds(userId, otherUserId))
+                : userStorage.loadCommonFriends(userId, otherUserId);
         log.debug("Returning {} common friends.", friends.size());
         return friends;
     }
 
+    public List<User> getFriendSuggestions(long userId, int limit) {
+        checkUserExists(userId);
+        limit = Math.max(1, Math.min(limit, MAX_SUGGESTIONS));
+        List<User> suggestions = friendshipGraph.isReady()
+                ? loadUsers(friendshipGraph.suggestFriends(userId, limit))
+                : userStorage.loadFriendSuggestions(userId, limit);
+        log.debug("Returning {} friend suggestions for user #{}.", suggestions.size(), userId);
+        return suggestions;
+    }
+
+    public List<Feed> getFriendsFeed(long userId, int limit) {
+        checkUserExists(userId);
+        long[] friendIds = friendshipGraph.isReady()
+                ? friendshipGraph.getFriendIds(userId)
+                : userStorage.loadUserFriends(userId).stream().mapToLong(User::getId).toArray();
+        return feedService.getNewestFeeds(friendIds, limit);
+    }
+
+    // Only a possible hit of the filter costs a query; the unique constraints remain the final guard.
     public boolean isNotExistEmail(String email) {
+        if (uniquenessFilter.isReady() && !uniquenessFilter.mightContainEmail(email)) {
+            return true;
+        }
         return userStorage.isNotExistEmail(email);
     }
 
     public boolean isNotExistLogin(String login) {
+        if (uniquenessFilter.isReady() && !uniquenessFilter.mightContainLogin(login)) {
+            return true;
+        }
         return userStorage.isNotExistLogin(login);
     }
 
+    // Likes counters of the user's films are decremented in the same transaction as the delete.
+    @Transactional
     public void deleteUser(long userId){
+        Optional<User> user = userStorage.loadUserCredentials(userId);
         userStorage.deleteUser(userId);
+        afterCommit(() -> {
+            user.ifPresent(deleted -> uniquenessFilter.removeUser(deleted.getEmail(), deleted.getLogin()));
+            friendshipGraph.removeUser(userId);
+            for (long filmId : likesIndex.removeUser(userId)) {
+                popularityIndex.refreshLikes(filmId);
+            }
+        });
         log.debug("Delete {}.", userId);
     }
-}
\ No newline at end of file
+
+    private boolean isExistFriendship(long userId, long friendId) {
+        return friendshipGraph.isReady()
+                ? friendshipGraph.isExistFriendship(userId, friendId)
+                : userStorage.isExistFriendship(userId, friendId);
+    }
+
+    private List<User> loadUsers(long[] ids) {
+        return userStorage.loadUsersByIds(Arrays.stream(ids).boxed().collect(Collectors.toList()));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package ru.yandex.practicum.filmorate.storage.feeds;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Append-only archive of old feed events. A segment holds the events between the previous segment's watermark
+ * and its own: a data file of per-user deflated blocks and an index file with the offset and event id range of
+ * every block. The index file is written last, so a segment without one is an unfinished compaction and is
+ * ignored. Segments live in a directory per archive id, and the archive id and watermarks it must cover come
+ * from the database, so an archive that doesn't match the database is never read.
+ */
+@Slf4j
+@Component
+public class FeedArchive {
+
+    private static final String DATA_SUFFIX = ".dat";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Codes are positions in these arrays, so new constants may only be appended.
+    private static final EventType[] EVENT_TYPES = {EventType.LIKE, EventType.REVIEW, EventType.FRIEND};
+    private static final Operation[] OPERATIONS = {Operation.REMOVE, Operation.ADD, Operation.UPDATE};
+
+    private final Path root;
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Map<Long, List<Block>> blocks = new ConcurrentHashMap<>();
+    private volatile Path directory;
+    private volatile long watermark;
+
+    @Autowired
+    public FeedArchive(@Value("${filmorate.feed.archive-dir:./db/feed-archive}") String directory) {
+        this.root = Paths.get(directory);
+    }
+
+    // Loads the segments of the archive if they cover exactly the events after start up to end. Otherwise the
+    // archive is left empty, its files are kept as they are and false is returned. Segments past end belong to
+    // a compaction that was never committed to the database and are deleted.
+    public boolean load(String archiveId, long start, long end) throws IOException {
+        reset(archiveId, start);
+        if (!Files.isDirectory(directory)) {
+            return start == end;
+        }
+        Map<Long, Segment> latest = new TreeMap<>();
+        List<Segment> stale = new ArrayList<>();
+        for (Path index : listIndexes()) {
+            Segment segment = readSegment(index);
+            if (segment.getWatermark() > end) {
+                stale.add(segment);
+                continue;
+            }
+            Segment other = latest.put(segment.getWatermark(), segment);
+            if (other != null && other.getGeneration() > segment.getGeneration()) {
+                latest.put(other.getWatermark(), other);
+                stale.add(segment);
+            } else if (other != null) {
+                stale.add(other);
+            }
+        }
+        long covered = start;
+        for (Segment segment : latest.values()) {
+            if (segment.getPreviousWatermark() != covered) {
+                break;
+            }
+            covered = segment.getWatermark();
+        }
+        if (covered != end) {
+            log.warn("Feed archive {} covers events up to #{} instead of #{}.", archiveId, covered, end);
+            return false;
+        }
+        for (Segment segment : stale) {
+            deleteFiles(segment);
+        }
+        latest.values().forEach(this::publish);
+        log.debug("Loaded {} feed archive segments up to event #{}.", latest.size(), watermark);
+        return true;
+    }
+
+    public void reset(String archiveId, long start) {
+        directory = root.resolve(archiveId);
+        segments.clear();
+        blocks.clear();
+        watermark = start;
+    }
+
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public List<Segment> getSegments() {
+        return new ArrayList<>(segments.values());
+    }
+
+    public SegmentWriter newSegment(long segmentWatermark) throws IOException {
+        return new SegmentWriter(watermark, segmentWatermark, 0);
+    }
+
+    // Writes a new generation of the segment without the blocks of users that aren't kept. The segment itself
+    // stays readable until it's replaced.
+    public Segment rewrite(Segment segment, LongPredicate keepUser) throws IOException {
+        try (SegmentWriter writer = new SegmentWriter(
+                segment.getPreviousWatermark(), segment.getWatermark(), segment.getGeneration() + 1)) {
+            for (Block block : segment.getBlocks()) {
+                if (keepUser.test(block.getUserId())) {
+                    writer.copy(block);
+                }
+            }
+            return writer.commit();
+        }
+    }
+
+    // The methods below must not overlap reads that combine the archive with the hot table.
+
+    public void publish(Segment segment) {
+        segments.put(segment.getWatermark(), segment);
+        for (Block block : segment.getBlocks()) {
+            blocks.merge(block.getUserId(), List.of(block), (current, added) -> {
+                List<Block> merged = new ArrayList<>(current.size() + 1);
+                merged.addAll(current);
+                merged.addAll(added);
+                return merged;
+            });
+        }
+        watermark = Math.max(watermark, segment.getWatermark());
+    }
+
+    // Takes back the newest segment when its compaction couldn't be committed to the database.
+    public void discard(Segment segment) throws IOException {
+        segments.remove(segment.getWatermark());
+        rebuildBlocks();
+        watermark = segment.getPreviousWatermark();
+        deleteFiles(segment);
+    }
+
+    public void replace(Segment segment, Segment rewritten) throws IOException {
+        segments.put(rewritten.getWatermark(), rewritten);
+        rebuildBlocks();
+        deleteFiles(segment);
+    }
+
+    // Events of the user with afterEventId < event_id < beforeEventId, ascending or newest first.
+    public List<Feed> read(long userId, long afterEventId, long beforeEventId, int limit, boolean newestFirst) {
+        List<Block> userBlocks = blocks.getOrDefault(userId, Collections.emptyList());
+        List<Feed> feeds = new ArrayList<>();
+        for (int i = 0; i < userBlocks.size() && feeds.size() < limit; i++) {
+            Block block = userBlocks.get(newestFirst ? userBlocks.size() - 1 - i : i);
+            if (block.getMaxEventId() <= afterEventId || block.getMinEventId() >= beforeEventId) {
+                continue;
+            }
+            List<Feed> blockFeeds = readBlock(block);
+            if (newestFirst) {
+                Collections.reverse(blockFeeds);
+            }
+            for (Feed feed : blockFeeds) {
+                if (feed.getEventId() > afterEventId && feed.getEventId() < beforeEventId) {
+                    feeds.add(feed);
+                    if (feeds.size() >= limit) {
+                        break;
+                    }
+                }
+            }
+        }
+        return feeds;
+    }
+
+    private void rebuildBlocks() {
+        blocks.clear();
+        for (Segment segment : segments.values()) {
+            for (Block block : segment.getBlocks()) {
+                blocks.computeIfAbsent(block.getUserId(), userId -> new ArrayList<>()).add(block);
+            }
+        }
+    }
+
+    // Deletes leftovers of unfinished writes and returns the index files.
+    private List<Path> listIndexes() throws IOException {
+        List<Path> indexes = new ArrayList<>();
+        List<Path> leftovers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.endsWith(INDEX_SUFFIX)) {
+                    indexes.add(file);
+                } else if (name.endsWith(TEMP_SUFFIX) || name.endsWith(DATA_SUFFIX)
+                        && !Files.exists(indexOf(file))) {
+                    leftovers.add(file);
+                }
+            });
+        }
+        for (Path file : leftovers) {
+            Files.deleteIfExists(file);
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    private Segment readSegment(Path index) throws IOException {
+        Path data = directory.resolve(index.getFileName().toString().replace(INDEX_SUFFIX, DATA_SUFFIX));
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            long previousWatermark = in.readLong();
+            long segmentWatermark = in.readLong();
+            int generation = in.readInt();
+            int count = in.readInt();
+            List<Block> segmentBlocks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                segmentBlocks.add(new Block(
+                        data, in.readLong(), in.readLong(), in.readInt(), in.readInt(), in.readLong(), in.readLong()
+                ));
+            }
+            return new Segment(previousWatermark, segmentWatermark, generation, data, index, segmentBlocks);
+        }
+    }
+
+    // The index goes first, so a crash leaves a data file without an index, which the next load deletes.
+    private void deleteFiles(Segment segment) throws IOException {
+        Files.deleteIfExists(segment.getIndex());
+        Files.deleteIfExists(segment.getData());
+    }
+
+    private Path indexOf(Path data) {
+        return data.resolveSibling(data.getFileName().toString().replace(DATA_SUFFIX, INDEX_SUFFIX));
+    }
+
+    private List<Feed> readBlock(Block block) {
+        List<Feed> feeds = new ArrayList<>(block.getCount());
+        try (DataInputStream in = new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(readBytes(block))))) {
+            for (int i = 0; i < block.getCount(); i++) {
+                feeds.add(Feed.builder()
+                        .userId(block.getUserId())
+                        .eventId(in.readLong())
+                        .timestamp(in.readLong())
+                        .eventType(EVENT_TYPES[in.readByte()].name())
+                        .operation(OPERATIONS[in.readByte()].name())
+                        .entityId(in.readLong())
+                        .build());
+            }
+            return feeds;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] readBytes(Block block) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(block.getLength());
+        try (FileChannel channel = FileChannel.open(block.getFile(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, block.getOffset() + buffer.position()) < 0) {
+                    throw new EOFException("Truncated feed archive block in " + block.getFile() + ".");
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    private static byte code(Object[] values, String name) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].toString().equals(name)) {
+                return (byte) i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown feed value " + name + ".");
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Block {
+        private final Path file;
+        private final long userId;
+        private final long offset;
+        private final int length;
+        private final int count;
+        private final long minEventId;
+        private final long maxEventId;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Segment {
+        private final long previousWatermark;
+        private final long watermark;
+        private final int generation;
+        private final Path data;
+        private final Path index;
+        private final List<Block> blocks;
+    }
+
+    // Feeds must be appended ordered by user and event id.
+    public class SegmentWriter implements Closeable {
+
+        private final long previousWatermark;
+        private final long segmentWatermark;
+        private final int generation;
+        private final Path data;
+        private final Path index;
+        private final Path dataTemp;
+        private final Path indexTemp;
+        private final FileOutputStream dataFile;
+        private final OutputStream dataOut;
+        private final List<Block> written = new ArrayList<>();
+        private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+        private final DataOutputStream blockOut = new DataOutputStream(blockBytes);
+        private long offset;
+        private long userId;
+        private int count;
+        private long minEventId;
+        private long maxEventId;
+        private boolean committed;
+
+        private SegmentWriter(long previousWatermark, long segmentWatermark, int generation) throws IOException {
+            this.previousWatermark = previousWatermark;
+            this.segmentWatermark = segmentWatermark;
+            this.generation = generation;
+            Files.createDirectories(directory);
+            String name = String.format("segment-%020d-%04d", segmentWatermark, generation);
+            data = directory.resolve(name + DATA_SUFFIX);
+            index = directory.resolve(name + INDEX_SUFFIX);
+            dataTemp = directory.resolve(name + DATA_SUFFIX + TEMP_SUFFIX);
+            indexTemp = directory.resolve(name + INDEX_SUFFIX + TEMP_SUFFIX);
+            dataFile = new FileOutputStream(dataTemp.toFile());
+            dataOut = new BufferedOutputStream(dataFile);
+        }
+
+        public void append(Feed feed) throws IOException {
+            if (count > 0 && feed.getUserId() != userId) {
+                finishBlock();
+            }
+            if (count == 0) {
+                userId = feed.getUserId();
+                minEventId = feed.getEventId();
+            }
+            blockOut.writeLong(feed.getEventId());
+            blockOut.writeLong(feed.getTimestamp());
+            blockOut.writeByte(code(EVENT_TYPES, feed.getEventType()));
+            blockOut.writeByte(code(OPERATIONS, feed.getOperation()));
+            blockOut.writeLong(feed.getEntityId());
+            maxEventId = feed.getEventId();
+            count++;
+        }
+
+        // Copies a block of another segment as it is, without inflating it.
+        public void copy(Block block) throws IOException {
+            finishBlock();
+            dataOut.write(readBytes(block));
+            written.add(new Block(data, block.getUserId(), offset, block.getLength(), block.getCount(),
+                    block.getMinEventId(), block.getMaxEventId()));
+            offset += block.getLength();
+        }
+
+        public Segment commit() throws IOException {
+            finishBlock();
+            dataOut.flush();
+            dataFile.getFD().sync();
+            dataOut.close();
+            try (FileOutputStream indexFile = new FileOutputStream(indexTemp.toFile());
+                 DataOutputStream indexOut = new DataOutputStream(new BufferedOutputStream(indexFile))) {
+                indexOut.writeLong(previousWatermark);
+                indexOut.writeLong(segmentWatermark);
+                indexOut.writeInt(generation);
+                indexOut.writeInt(written.size());
+                for (Block block : written) {
+                    indexOut.writeLong(block.getUserId());
+                    indexOut.writeLong(block.getOffset());
+                    indexOut.writeInt(block.getLength());
+                    indexOut.writeInt(block.getCount());
+                    indexOut.writeLong(block.getMinEventId());
+                    indexOut.writeLong(block.getMaxEventId());
+                }
+                indexOut.flush();
+                indexFile.getFD().sync();
+            }
+            Files.move(dataTemp, data, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(indexTemp, index, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            log.debug("Wrote feed archive segment {} with {} blocks.", index.getFileName(), written.size());
+            return new Segment(previousWatermark, segmentWatermark, generation, data, index, written);
+        }
+
+        @Override
+        public void close() throws IOException {
+            dataOut.close();
+            if (!committed) {
+                Files.deleteIfExists(dataTemp);
+                Files.deleteIfExists(indexTemp);
+            }
+        }
+
+        private void finishBlock() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            blockOut.flush();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+                blockBytes.writeTo(out);
+            } finally {
+                deflater.end();
+            }
+            dataOut.write(compressed.toByteArray());
+            written.add(new Block(data, userId, offset, compressed.size(), count, minEventId, maxEventId));
+            offset += compressed.size();
+            blockBytes.reset();
+            count = 0;
+        }
+    }
+}
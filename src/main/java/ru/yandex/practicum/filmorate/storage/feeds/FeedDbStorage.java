@@ -1,48 +1,277 @@
 package ru.yandex.practicum.filmorate.storage.feeds;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
-import ru.yandex.practicum.filmorate.model.EventType;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.model.Feed;
-import ru.yandex.practicum.filmorate.model.Operation;
 
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Instant;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+@Slf4j
 @Repository("feedStorage")
 public class FeedDbStorage implements FeedStorage {
+    private static final int IDS_CHUNK_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FeedArchive feedArchive;
+    private final ReadWriteLock tierLock = new ReentrantReadWriteLock();
 
     @Autowired
-    public FeedDbStorage(JdbcTemplate jdbcTemplate) {
+    public FeedDbStorage(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                         FeedArchive feedArchive) {
         this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.feedArchive = feedArchive;
+    }
+
+    // The archive is only read if it holds exactly the events the database has deleted. Otherwise, for example
+    // after the database was replaced, a new archive is started at the database watermark.
+    @PostConstruct
+    public void loadArchive() throws IOException {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT archive_id, start_watermark, watermark FROM feed_archive_state WHERE id = 1;"
+        );
+        if (rows.isEmpty()) {
+            String archiveId = UUID.randomUUID().toString();
+            jdbcTemplate.update("INSERT INTO feed_archive_state (id, archive_id, start_watermark, watermark) " +
+                    "VALUES (1, ?, 0, 0);", archiveId);
+            feedArchive.reset(archiveId, 0);
+            return;
+        }
+        String archiveId = (String) rows.get(0).get("archive_id");
+        long start = ((Number) rows.get(0).get("start_watermark")).longValue();
+        long watermark = ((Number) rows.get(0).get("watermark")).longValue();
+        if (!feedArchive.load(archiveId, start, watermark)) {
+            String newArchiveId = UUID.randomUUID().toString();
+            log.warn("Ignoring feed archive {}, starting archive {} after event #{}.",
+                    archiveId, newArchiveId, watermark);
+            jdbcTemplate.update("UPDATE feed_archive_state SET archive_id = ?, start_watermark = ? WHERE id = 1;",
+                    newArchiveId, watermark);
+            feedArchive.reset(newArchiveId, watermark);
+        }
     }
 
+    // Generated event ids are written back into the feeds, in batch order. The batch is saved all or nothing,
+    // so a failed batch can be retried without duplicates. Flushes may run in afterCommit callbacks, hence a new
+    // transaction.
     @Override
-    public void saveFeed(long id, long entityId, EventType eventType, Operation operation) {
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void saveFeeds(List<Feed> feeds) {
         String sqlQuery = "INSERT INTO feeds (event_time," +
                 "user_id," +
                 "event_type, " +
                 "operation," +
                 "entity_id) " +
                 "VALUES (?, ?, ?, ?, ?);";
-        jdbcTemplate.update(sqlQuery, Instant.now(), id, eventType.name(), operation.name(), entityId);
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sqlQuery, new String[]{"event_id"})) {
+                for (Feed feed : feeds) {
+                    statement.setTimestamp(1, Timestamp.from(Instant.ofEpochMilli(feed.getTimestamp())));
+                    statement.setLong(2, feed.getUserId());
+                    statement.setString(3, feed.getEventType());
+                    statement.setString(4, feed.getOperation());
+                    statement.setLong(5, feed.getEntityId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    for (int i = 0; i < feeds.size() && keys.next(); i++) {
+                        feeds.get(i).setEventId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    // Events up to the archive watermark are read from the archive, newer ones from the feeds table.
+    // Without a lower bound the newest events are read backwards and returned in ascending order.
+    @Override
+    public List<Feed> getNewsFeed(long userId, Long afterEventId, Long beforeEventId, int limit) {
+        boolean newest = afterEventId == null;
+        long after = afterEventId == null ? 0 : afterEventId;
+        long before = beforeEventId == null ? Long.MAX_VALUE : beforeEventId;
+        tierLock.readLock().lock();
+        try {
+            long watermark = feedArchive.getWatermark();
+            List<Feed> feeds = new ArrayList<>();
+            if (newest) {
+                feeds.addAll(loadHotFeeds(userId, Math.max(after, watermark), before, limit, true));
+            }
+            if (feeds.size() < limit && after < watermark) {
+                feeds.addAll(feedArchive.read(
+                        userId, after, Math.min(before, watermark + 1), limit - feeds.size(), newest
+                ));
+            }
+            if (!newest && feeds.size() < limit) {
+                feeds.addAll(loadHotFeeds(userId, Math.max(after, watermark), before, limit - feeds.size(), false));
+            }
+            if (newest) {
+                Collections.reverse(feeds);
+            }
+            return feeds;
+        } finally {
+            tierLock.readLock().unlock();
+        }
     }
 
+    // Returns up to perUser newest events of every user, grouped by user and newest first. The hot tier is read by
+    // one windowed query per chunk of users; only users with fewer hot events than perUser are read from the archive.
     @Override
-    public List<Feed> getNewsFeed(long userId) {
+    public List<Feed> getNewestFeeds(List<Long> userIds, int perUser) {
+        tierLock.readLock().lock();
+        try {
+            long watermark = feedArchive.getWatermark();
+            Map<Long, List<Feed>> hot = new HashMap<>();
+            for (int from = 0; from < userIds.size(); from += IDS_CHUNK_SIZE) {
+                List<Long> chunk = userIds.subList(from, Math.min(from + IDS_CHUNK_SIZE, userIds.size()));
+                String sql = "SELECT event_time," +
+                        "user_id," +
+                        "event_type," +
+                        "operation," +
+                        "event_id," +
+                        "entity_id " +
+                        "FROM (" +
+                        "    SELECT f.*, ROW_NUMBER() OVER (PARTITION BY f.user_id ORDER BY f.event_id DESC) AS user_rank" +
+                        "    FROM feeds f" +
+                        "    WHERE f.user_id IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")" +
+                        "    AND f.event_id > ?" +
+                        ") newest " +
+                        "WHERE user_rank <= ? " +
+                        "ORDER BY user_id, event_id DESC;";
+                List<Object> params = new ArrayList<>(chunk);
+                params.add(watermark);
+                params.add(perUser);
+                for (Feed feed : jdbcTemplate.query(sql, this::makeFeed, params.toArray())) {
+                    hot.computeIfAbsent(feed.getUserId(), k -> new ArrayList<>()).add(feed);
+                }
+            }
+            List<Feed> feeds = new ArrayList<>();
+            for (Long userId : userIds) {
+                List<Feed> userFeeds = hot.getOrDefault(userId, List.of());
+                feeds.addAll(userFeeds);
+                if (userFeeds.size() < perUser && watermark > 0) {
+                    feeds.addAll(feedArchive.read(userId, 0, watermark + 1, perUser - userFeeds.size(), true));
+                }
+            }
+            return feeds;
+        } finally {
+            tierLock.readLock().unlock();
+        }
+    }
+
+    // Archives every event up to the newest one older than the horizon, so the archive always holds an id prefix.
+    // The segment is published before the database moves its watermark and deletes exactly the archived range in
+    // one transaction; if that fails the segment is discarded and the events stay in the feeds table.
+    @Override
+    public int archiveFeeds(Instant before) {
+        purgeDeletedUsers();
+        long previousWatermark = feedArchive.getWatermark();
+        String sqlWatermark = "SELECT MAX(event_id) FROM feeds WHERE event_time < ? AND event_id > ?;";
+        Long watermark = jdbcTemplate.queryForObject(
+                sqlWatermark, Long.class, Timestamp.from(before), previousWatermark
+        );
+        if (watermark == null) {
+            return 0;
+        }
+        String sql = "SELECT event_time," +
+                "user_id," +
+                "event_type," +
+                "operation," +
+                "event_id," +
+                "entity_id " +
+                "FROM feeds WHERE event_id > ? AND event_id <= ? " +
+                "ORDER BY user_id, event_id;";
+        FeedArchive.Segment segment;
+        try (FeedArchive.SegmentWriter writer = feedArchive.newSegment(watermark)) {
+            jdbcTemplate.query(sql, rs -> {
+                try {
+                    writer.append(makeFeed(rs, 0));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, previousWatermark, watermark);
+            segment = writer.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        tierLock.writeLock().lock();
+        try {
+            feedArchive.publish(segment);
+        } finally {
+            tierLock.writeLock().unlock();
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                int updated = jdbcTemplate.update("UPDATE feed_archive_state SET watermark = ? " +
+                        "WHERE id = 1 AND watermark = ?;", watermark, previousWatermark);
+                if (updated != 1) {
+                    throw new IllegalStateException("Feed archive state moved past event #" + previousWatermark + ".");
+                }
+                return jdbcTemplate.update("DELETE FROM feeds WHERE event_id > ? AND event_id <= ?;",
+                        previousWatermark, watermark);
+            });
+        } catch (RuntimeException e) {
+            tierLock.writeLock().lock();
+            try {
+                feedArchive.discard(segment);
+            } catch (IOException discardError) {
+                e.addSuppressed(discardError);
+            } finally {
+                tierLock.writeLock().unlock();
+            }
+            throw e;
+        }
+    }
+
+    // Archived events of deleted users are dropped by rewriting the segments that hold them.
+    private void purgeDeletedUsers() {
+        Set<Long> users = new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM users;", Long.class));
+        for (FeedArchive.Segment segment : feedArchive.getSegments()) {
+            if (segment.getBlocks().stream().allMatch(block -> users.contains(block.getUserId()))) {
+                continue;
+            }
+            try {
+                FeedArchive.Segment rewritten = feedArchive.rewrite(segment, users::contains);
+                tierLock.writeLock().lock();
+                try {
+                    feedArchive.replace(segment, rewritten);
+                } finally {
+                    tierLock.writeLock().unlock();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private List<Feed> loadHotFeeds(long userId, long after, long before, int limit, boolean newestFirst) {
         String sql = "SELECT event_time," +
                 "user_id," +
                 "event_type," +
                 "operation," +
                 "event_id," +
                 "entity_id " +
-                "FROM feeds WHERE user_id = ?" +
-                "ORDER BY event_id;";
-        return jdbcTemplate.query(sql, this::makeFeed, userId);
+                "FROM feeds WHERE user_id = ? AND event_id > ? AND event_id < ? " +
+                "ORDER BY event_id " + (newestFirst ? "DESC" : "ASC") + " " +
+                "LIMIT ?;";
+        return jdbcTemplate.query(sql, this::makeFeed, userId, after, before, limit);
     }
 
     private Feed makeFeed(ResultSet resultSet, long rowNum) throws SQLException {
@@ -1,13 +1,16 @@
 package ru.yandex.practicum.filmorate.storage.feeds;
 
-import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.Feed;
-import ru.yandex.practicum.filmorate.model.Operation;
 
+import java.time.Instant;
 import java.util.List;
 
 public interface FeedStorage {
-    List<Feed> getNewsFeed(long userId);
+    List<Feed> getNewsFeed(long userId, Long afterEventId, Long beforeEventId, int limit);
 
-    void saveFeed(long id, long entityId, EventType eventType, Operation operation);
+    List<Feed> getNewestFeeds(List<Long> userIds, int perUser);
+
+    int archiveFeeds(Instant before);
+
+    void saveFeeds(List<Feed> feeds);
 }
@@ -0,0 +1,205 @@
+package ru.yandex.practicum.filmorate.storage.feeds;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Feed;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Events are flushed by one writer at a time in queue order, so event ids grow in the order events were submitted.
+// A batch that fails for any reason other than a constraint violation is kept and retried first by the next flush.
+// The queue itself is lock-free; its bound is a permit per unsaved event, released once the event is saved or dropped.
+@Slf4j
+@Component
+public class FeedWriter {
+
+    private static final long SUBMIT_TIMEOUT_MS = 10_000;
+
+    private final FeedStorage feedStorage;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final Queue<Feed> queue = new ConcurrentLinkedQueue<>();
+    private final Semaphore permits;
+    private final Deque<Feed> pending = new ArrayDeque<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Lock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "feed-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong flushedEvents = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private final List<Consumer<Feed>> listeners = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public FeedWriter(
+            FeedStorage feedStorage,
+            @Value("${filmorate.feed.batch-size:500}") int batchSize,
+            @Value("${filmorate.feed.queue-capacity:10000}") int queueCapacity,
+            @Value("${filmorate.feed.flush-interval-ms:100}") long flushIntervalMs
+    ) {
+        this.feedStorage = feedStorage;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.permits = new Semaphore(queueCapacity);
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Listeners run on the flushing thread after the events are saved, in event id order.
+    public void addListener(Consumer<Feed> listener) {
+        listeners.add(listener);
+    }
+
+    // A full queue is flushed by the caller; if that doesn't free space the caller waits for the writer.
+    public void submit(Feed feed) {
+        if (!permits.tryAcquire()) {
+            flush();
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(SUBMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                throw new IllegalStateException("Feed queue is full, " + feed + " was not saved.");
+            }
+        }
+        queue.offer(feed);
+        if (getQueueDepth() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    // Never throws: a failed batch stays pending and readers see the events saved so far.
+    public void flush() {
+        flushLock.lock();
+        try {
+            while (true) {
+                if (pending.isEmpty()) {
+                    Feed feed;
+                    while (pending.size() < batchSize && (feed = queue.poll()) != null) {
+                        pending.addLast(feed);
+                    }
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                }
+                write();
+            }
+        } catch (RuntimeException e) {
+            log.error("Feed flush failed, {} events kept for the next flush.", getQueueDepth(), e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+        log.debug("Feed writer stopped after {} events in {} flushes, {} left unsaved.",
+                flushedEvents.get(), flushes.get(), getQueueDepth());
+    }
+
+    // Events submitted but not saved yet, including a failed batch waiting for its retry.
+    public int getQueueDepth() {
+        return queueCapacity - permits.availablePermits();
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    public long getFlushedEvents() {
+        return flushedEvents.get();
+    }
+
+    public double getAverageFlushMillis() {
+        long count = flushes.get();
+        return count == 0 ? 0 : flushNanos.get() / 1_000_000.0 / count;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.cache.stats-interval-ms:600000}")
+    public void logStats() {
+        log.debug("Feed writer: {} events queued, {} events in {} flushes, {} ms per flush on average.",
+                getQueueDepth(), getFlushedEvents(), getFlushes(), String.format("%.1f", getAverageFlushMillis()));
+    }
+
+    private void write() {
+        long start = System.nanoTime();
+        List<Feed> saved = new ArrayList<>(pending.size());
+        try {
+            try {
+                List<Feed> batch = new ArrayList<>(pending);
+                feedStorage.saveFeeds(batch);
+                saved.addAll(batch);
+                pending.clear();
+                permits.release(batch.size());
+            } catch (DataIntegrityViolationException e) {
+                // A user deleted before the flush fails the whole batch; the remaining events are saved one by one.
+                while (!pending.isEmpty()) {
+                    Feed feed = pending.peekFirst();
+                    try {
+                        feedStorage.saveFeeds(List.of(feed));
+                        saved.add(feed);
+                    } catch (DataIntegrityViolationException rowException) {
+                        log.debug("Dropping {}: {}.", feed, rowException.getMessage());
+                    }
+                    pending.removeFirst();
+                    permits.release();
+                }
+            }
+        } finally {
+            if (!saved.isEmpty()) {
+                long elapsed = System.nanoTime() - start;
+                publish(saved);
+                flushes.incrementAndGet();
+                flushedEvents.addAndGet(saved.size());
+                flushNanos.addAndGet(elapsed);
+                log.debug("Flushed {} events in {} ms, {} queued.", saved.size(), elapsed / 1_000_000, getQueueDepth());
+            }
+        }
+    }
+
+    private void publish(List<Feed> feeds) {
+        for (Consumer<Feed> listener : listeners) {
+            for (Feed feed : feeds) {
+                if (feed.getEventId() == null) {
+                    continue;
+                }
+                try {
+                    listener.accept(feed);
+                } catch (RuntimeException e) {
+                    log.warn("Feed listener failed on {}.", feed, e);
+                }
+            }
+        }
+    }
+}
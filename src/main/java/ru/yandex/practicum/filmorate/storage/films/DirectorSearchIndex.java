@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate.storage.films;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.LongArrays;
+import ru.yandex.practicum.filmorate.util.TrigramIndex;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Component
+public class DirectorSearchIndex {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TrigramIndex names = new TrigramIndex();
+    private final Map<Long, long[]> directorFilms = new HashMap<>();
+    private final Map<Long, long[]> filmDirectors = new HashMap<>();
+    private volatile boolean ready;
+
+    @Autowired
+    public DirectorSearchIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            directorFilms.clear();
+            filmDirectors.clear();
+            Map<Long, String> directorNames = new HashMap<>();
+            jdbcTemplate.query("SELECT id, name FROM directors;", rs -> {
+                directorNames.put(rs.getLong("id"), rs.getString("name"));
+            });
+            names.load(directorNames);
+            jdbcTemplate.query("SELECT film_id, director_id FROM films_directors;", rs -> {
+                link(rs.getLong("film_id"), rs.getLong("director_id"));
+            });
+            ready = true;
+            log.debug("Loaded search index of {} directors.", names.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long[] searchFilmsByDirector(String query) {
+        lock.readLock().lock();
+        try {
+            long[] films = LongArrays.EMPTY;
+            for (long directorId : names.search(query)) {
+                films = LongArrays.union(films, directorFilms.getOrDefault(directorId, LongArrays.EMPTY));
+            }
+            return films;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long[] getFilmIds(long directorId) {
+        lock.readLock().lock();
+        try {
+            return directorFilms.getOrDefault(directorId, LongArrays.EMPTY);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void putDirector(long directorId, String name) {
+        lock.writeLock().lock();
+        try {
+            names.put(directorId, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(long directorId) {
+        lock.writeLock().lock();
+        try {
+            names.remove(directorId);
+            for (long filmId : directorFilms.getOrDefault(directorId, LongArrays.EMPTY)) {
+                unlink(filmId, directorId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setFilmDirectors(long filmId, Collection<Long> directorIds) {
+        lock.writeLock().lock();
+        try {
+            removeFilmLinks(filmId);
+            for (Long directorId : directorIds) {
+                link(filmId, directorId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFilmLinks(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeFilmLinks(long filmId) {
+        for (long directorId : filmDirectors.getOrDefault(filmId, LongArrays.EMPTY)) {
+            unlink(filmId, directorId);
+        }
+    }
+
+    private void link(long filmId, long directorId) {
+        directorFilms.put(directorId, LongArrays.insert(directorFilms.getOrDefault(directorId, LongArrays.EMPTY), filmId));
+        filmDirectors.put(filmId, LongArrays.insert(filmDirectors.getOrDefault(filmId, LongArrays.EMPTY), directorId));
+    }
+
+    private void unlink(long filmId, long directorId) {
+        put(directorFilms, directorId, LongArrays.remove(directorFilms.getOrDefault(directorId, LongArrays.EMPTY), filmId));
+        put(filmDirectors, filmId, LongArrays.remove(filmDirectors.getOrDefault(filmId, LongArrays.EMPTY), directorId));
+    }
+
+    private static void put(Map<Long, long[]> postings, long key, long[] ids) {
+        if (ids.length == 0) {
+            postings.remove(key);
+        } else {
+            postings.put(key, ids);
+        }
+    }
+}
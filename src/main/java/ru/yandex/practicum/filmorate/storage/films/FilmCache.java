@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.storage.films;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.util.LruCache;
+
+import java.util.ArrayList;
+
+// Films are copied in and out, so callers never share mutable instances with the cache.
+@Slf4j
+@Component
+public class FilmCache {
+
+    private final LruCache<Long, Film> films;
+
+    @Autowired
+    public FilmCache(@Value("${filmorate.films.cache-size:10000}") int capacity) {
+        this.films = new LruCache<>(capacity);
+    }
+
+    public Film get(long filmId) {
+        Film film = films.get(filmId);
+        return film == null ? null : copyOf(film);
+    }
+
+    public boolean contains(long filmId) {
+        return films.containsKey(filmId);
+    }
+
+    public long stamp() {
+        return films.stamp();
+    }
+
+    public void put(Film film, long stamp) {
+        films.put(film.getId(), copyOf(film), stamp);
+    }
+
+    public void invalidate(long filmId) {
+        films.invalidate(filmId);
+    }
+
+    public void invalidate(long[] filmIds) {
+        for (long filmId : filmIds) {
+            films.invalidate(filmId);
+        }
+    }
+
+    public void clear() {
+        films.clear();
+    }
+
+    public int size() {
+        return films.size();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.cache.stats-interval-ms:600000}")
+    public void logStats() {
+        log.debug("Film cache: {} films, {} hits, {} misses, {} evictions.",
+                films.size(), films.getHits(), films.getMisses(), films.getEvictions());
+    }
+
+    private static Film copyOf(Film film) {
+        return Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .mpa(film.getMpa())
+                .genres(film.getGenres() == null ? null : new ArrayList<>(film.getGenres()))
+                .directors(film.getDirectors() == null ? null : new ArrayList<>(film.getDirectors()))
+                .build();
+    }
+}
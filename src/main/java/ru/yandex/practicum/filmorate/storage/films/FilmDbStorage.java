@@ -1,8 +1,9 @@
 package ru.yandex.practicum.filmorate.storage.films;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
@@ -16,18 +17,31 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Repository("filmStorage")
 public class FilmDbStorage implements FilmStorage {
 
+    private static final int HYDRATION_CHUNK_SIZE = 1000;
+    private static final int EXPORT_FETCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final MpaDictionary mpaDictionary;
+    private final GenreDictionary genreDictionary;
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, MpaDictionary mpaDictionary, GenreDictionary genreDictionary) {
         this.jdbcTemplate = jdbcTemplate;
+        this.mpaDictionary = mpaDictionary;
+        this.genreDictionary = genreDictionary;
     }
 
     @Override
@@ -38,13 +52,16 @@ public class FilmDbStorage implements FilmStorage {
                         "f.description, " +
                         "f.release_date, " +
                         "f.duration, " +
-                        "f.mpa_id, " +
-                        "m.name mpa " +
+                        "f.mpa_id " +
                         "FROM films f " +
-                        "JOIN mpa m" +
-                        "    ON m.id = f.mpa_id " +
                         "WHERE f.id = ?;";
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> mapRow(rs, id), id).stream().findAny();
+        return hydrate(jdbcTemplate.query(sqlQuery, (rs, rowNum) -> mapRow(rs, id), id)).stream().findAny();
+    }
+
+    @Override
+    public boolean existsFilm(long id) {
+        String sqlQuery = "SELECT EXISTS (SELECT 1 FROM films WHERE id = ?);";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlQuery, Boolean.class, id));
     }
 
     @Override
@@ -64,6 +81,53 @@ public class FilmDbStorage implements FilmStorage {
         return Objects.requireNonNull(keyHolder.getKey()).longValue();
     }
 
+    // Films, their genres and their directors go in as three batches; ids come from the film batch keys.
+    @Override
+    public List<Long> saveFilms(List<Film> films) {
+        String sqlQuery = "INSERT INTO films (name, description, release_date, duration, mpa_id) " +
+                "VALUES (?, ?, ?, ?, ?);";
+        List<Long> ids = jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sqlQuery, new String[]{"id"})) {
+                for (Film film : films) {
+                    statement.setString(1, film.getName());
+                    statement.setString(2, film.getDescription());
+                    statement.setDate(3, Date.valueOf(film.getReleaseDate()));
+                    statement.setLong(4, film.getDuration());
+                    statement.setLong(5, film.getMpa().getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                List<Long> keys = new ArrayList<>(films.size());
+                try (ResultSet rs = statement.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        keys.add(rs.getLong(1));
+                    }
+                }
+                return keys;
+            }
+        });
+        if (ids == null || ids.size() != films.size()) {
+            throw new IllegalStateException("Expected " + films.size() + " generated film ids.");
+        }
+        List<long[]> genreLinks = new ArrayList<>();
+        List<long[]> directorLinks = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            long filmId = ids.get(i);
+            Film film = films.get(i);
+            if (film.getGenres() != null) {
+                film.getGenres().stream().map(Genre::getId).distinct()
+                        .forEach(genreId -> genreLinks.add(new long[]{filmId, genreId}));
+            }
+            if (film.getDirectors() != null) {
+                film.getDirectors().stream().map(Director::getId).distinct()
+                        .forEach(directorId -> directorLinks.add(new long[]{filmId, directorId}));
+            }
+        }
+        saveLinks("INSERT INTO films_genres (film_id, genre_id) VALUES (?, ?);", genreLinks);
+        saveLinks("INSERT INTO films_directors (film_id, director_id) VALUES (?, ?);", directorLinks);
+        return ids;
+    }
+
     @Override
     public void updateFilm(Film film) {
         String sqlQuery = "UPDATE films " +
@@ -75,13 +139,29 @@ public class FilmDbStorage implements FilmStorage {
                 film.getDescription(),
                 film.getReleaseDate(),
                 film.getDuration(),
-                film.getMpa().getId(),
+                film.getMpa() == null ? null : film.getMpa().getId(),
                 film.getId()
         );
     }
 
     @Override
-    public List<Film> loadFilms() {
+    public List<Film> loadFilms(long afterId, int limit) {
+        String sqlQuery =
+                "SELECT f.id, " +
+                        "f.name, " +
+                        "f.description, " +
+                        "f.release_date, " +
+                        "f.duration, " +
+                        "f.mpa_id " +
+                        "FROM films f " +
+                        "WHERE f.id > ? " +
+                        "ORDER BY f.id " +
+                        "LIMIT ?;";
+        return hydrate(jdbcTemplate.query(sqlQuery, this::mapRow, afterId, limit));
+    }
+
+    @Override
+    public void exportFilms(Consumer<Film> consumer) {
         String sqlQuery =
                 "SELECT f.id, " +
                         "f.name, " +
@@ -89,23 +169,75 @@ public class FilmDbStorage implements FilmStorage {
                         "f.release_date, " +
                         "f.duration, " +
                         "f.mpa_id, " +
-                        "m.name mpa " +
+                        "fg.genre_id, " +
+                        "d.id director_id, " +
+                        "d.name director_name " +
                         "FROM films f " +
-                        "JOIN mpa m" +
-                        "    ON m.id = f.mpa_id;";
-        return jdbcTemplate.query(sqlQuery, this::mapRow);
+                        "LEFT JOIN films_genres fg " +
+                        "    ON fg.film_id = f.id " +
+                        "LEFT JOIN films_directors fd " +
+                        "    ON fd.film_id = f.id " +
+                        "LEFT JOIN directors d " +
+                        "    ON d.id = fd.director_id " +
+                        "ORDER BY f.id;";
+        FilmExportHandler handler = new FilmExportHandler(consumer);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    sqlQuery, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY
+            );
+            statement.setFetchSize(EXPORT_FETCH_SIZE);
+            return statement;
+        }, handler);
+        handler.flush();
+    }
+
+    @Override
+    public List<Film> loadFilmsByIds(List<Long> ids) {
+        Map<Long, Film> films = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += HYDRATION_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + HYDRATION_CHUNK_SIZE, ids.size()));
+            String sqlQuery =
+                    "SELECT f.id, " +
+                            "f.name, " +
+                            "f.description, " +
+                            "f.release_date, " +
+                            "f.duration, " +
+                            "f.mpa_id " +
+                            "FROM films f " +
+                            "WHERE f.id IN (" + placeholders(chunk.size()) + ");";
+            jdbcTemplate.query(sqlQuery, this::mapRow, chunk.toArray()).forEach(film -> films.put(film.getId(), film));
+        }
+        List<Film> ordered = new ArrayList<>(films.size());
+        for (Long id : ids) {
+            Film film = films.get(id);
+            if (film != null) {
+                ordered.add(film);
+            }
+        }
+        return hydrate(ordered);
     }
 
     @Override
     public void saveLikeFromUser(long filmId, long userId) {
         String sqlQuery = "INSERT INTO likes (film_id, user_id) VALUES (?, ?);";
         jdbcTemplate.update(sqlQuery, filmId, userId);
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 1 WHERE id = ?;", filmId);
     }
 
     @Override
     public void deleteLikeFromUser(long filmId, long userId) {
         String sqlQuery = "DELETE FROM likes WHERE film_id = ? AND user_id = ?;";
-        jdbcTemplate.update(sqlQuery, filmId, userId);
+        if (jdbcTemplate.update(sqlQuery, filmId, userId) > 0) {
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1 WHERE id = ?;", filmId);
+        }
+    }
+
+    @Override
+    public int rebuildLikesCounters() {
+        String sqlQuery = "UPDATE films f " +
+                "SET likes_count = (SELECT COUNT(l.user_id) FROM likes l WHERE l.film_id = f.id) " +
+                "WHERE likes_count <> (SELECT COUNT(l.user_id) FROM likes l WHERE l.film_id = f.id);";
+        return jdbcTemplate.update(sqlQuery);
     }
 
     @Override
@@ -117,38 +249,26 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public List<Film> loadPopularFilms(long count, Long genreId, Integer year) {
-
-        String sqlYear = "SELECT * FROM films WHERE YEAR(release_date) = ?";
-
-        String sqlGenre = "SELECT f.* FROM films AS f JOIN films_genres AS fg ON fg.film_id = f.id AND fg.genre_id = ?";
-
-        String sqlGenreAndYear = "SELECT f.* FROM films AS f " +
-                "JOIN films_genres AS fg ON fg.genre_id = ? " +
-                "GROUP BY f.id HAVING YEAR(f.release_date) = ?";
-
         String sqlQuery =
                 "SELECT f.id, " +
                         "f.name, " +
                         "f.description, " +
                         "f.release_date, " +
                         "f.duration, " +
-                        "f.mpa_id, " +
-                        "m.name mpa " +
-                        "FROM ({}) f " +
-                        "JOIN mpa m" +
-                        "    ON m.id = f.mpa_id " +
-                        "LEFT JOIN (SELECT film_id, " +
-                        "      COUNT(user_id) rating " +
-                        "      FROM likes " +
-                        "      GROUP BY film_id " +
-                        ") r ON f.id =  r.film_id " +
-                        "ORDER BY r.rating DESC " +
+                        "f.mpa_id " +
+                        "FROM films f " +
+                        "WHERE 1 = 1 {} " +
+                        "ORDER BY f.likes_count DESC, f.id " +
                         "LIMIT ?";
 
+        String sqlGenre = "AND f.id IN (SELECT film_id FROM films_genres WHERE genre_id = ?) ";
+
+        String sqlYear = "AND YEAR(f.release_date) = ? ";
+
         Object[] sqlParams;
 
         if (genreId != null && year != null) {
-            sqlQuery = sqlQuery.replace("{}", sqlGenreAndYear);
+            sqlQuery = sqlQuery.replace("{}", sqlGenre + sqlYear);
             sqlParams = new Object[]{genreId, year, count};
         } else if (genreId != null) {
             sqlQuery = sqlQuery.replace("{}", sqlGenre);
@@ -157,11 +277,11 @@ public class FilmDbStorage implements FilmStorage {
             sqlQuery = sqlQuery.replace("{}", sqlYear);
             sqlParams = new Object[]{year, count};
         } else {
-            sqlQuery = sqlQuery.replace("({})", "films");
+            sqlQuery = sqlQuery.replace("{}", "");
             sqlParams = new Object[]{count};
         }
 
-        return jdbcTemplate.query(sqlQuery, this::mapRow, sqlParams);
+        return hydrate(jdbcTemplate.query(sqlQuery, this::mapRow, sqlParams));
     }
 
     @Override
@@ -179,16 +299,13 @@ public class FilmDbStorage implements FilmStorage {
                         "f.release_date, " +
                         "f.duration, " +
                         "f.mpa_id, " +
-                        "m.name mpa, " +
                         "YEAR(f.release_date) years " +
                         "FROM films f " +
-                        "JOIN mpa m" +
-                        "    ON m.id = f.mpa_id " +
                         "JOIN films_directors fd " +
                         "    ON fd.film_id = f.id " +
                         "WHERE fd.director_id = ? " +
                         "ORDER BY years ASC;";
-        return jdbcTemplate.query(sqlQuery, this::mapRow, directorId);
+        return hydrate(jdbcTemplate.query(sqlQuery, this::mapRow, directorId));
     }
 
     @Override
@@ -199,31 +316,20 @@ public class FilmDbStorage implements FilmStorage {
                         "f.description, " +
                         "f.release_date, " +
                         "f.duration, " +
-                        "f.mpa_id, " +
-                        "m.name mpa " +
+                        "f.mpa_id " +
                         "FROM films f " +
-                        "JOIN mpa m" +
-                        "    ON m.id = f.mpa_id " +
                         "JOIN films_directors fd " +
                         "    ON fd.film_id = f.id " +
-                        "LEFT JOIN (SELECT film_id, " +
-                        "      COUNT(user_id) rating " +
-                        "      FROM likes " +
-                        "      GROUP BY film_id " +
-                        ") r ON f.id =  r.film_id " +
                         "WHERE fd.director_id = ? " +
-                        "ORDER BY r.rating ASC;";
-        return jdbcTemplate.query(sqlQuery, this::mapRow, directorId);
+                        "ORDER BY f.likes_count ASC, f.id;";
+        return hydrate(jdbcTemplate.query(sqlQuery, this::mapRow, directorId));
     }
 
     @Override
     public List<Film> searchFilm(String query, String by) {
-        String sqlSearchPopularFilms = "SELECT f.*, m.name AS mpa, COUNT(fl.user_id) AS rating FROM films AS f " +
-                "LEFT JOIN mpa m ON m.id = f.mpa_id " +
-                "LEFT JOIN likes AS fl ON fl.film_id = f.id " +
+        String sqlSearchPopularFilms = "SELECT f.* FROM films AS f " +
                 "WHERE f.id IN ({}) " +
-                "GROUP BY f.id " +
-                "ORDER BY rating DESC";
+                "ORDER BY f.likes_count DESC, f.id";
 
         String subSqlTitle = "SELECT id FROM films WHERE name ILIKE CONCAT ('%', ?1, '%')";
 
@@ -251,7 +357,7 @@ public class FilmDbStorage implements FilmStorage {
                 return new ArrayList<>();
         }
 
-        return jdbcTemplate.query(sqlQuery, this::mapRow, query);
+        return hydrate(jdbcTemplate.query(sqlQuery, this::mapRow, query));
     }
 
 
@@ -262,28 +368,20 @@ public class FilmDbStorage implements FilmStorage {
                 "f.description, " +
                 "f.release_date, " +
                 "f.duration, " +
-                "f.mpa_id, " +
-                "m.name mpa " +
+                "f.mpa_id " +
                 "FROM films f " +
-                "JOIN mpa m" +
-                "    ON m.id = f.mpa_id " +
-                "LEFT JOIN (SELECT film_id, " +
-                "      COUNT(user_id) rating " +
-                "      FROM likes " +
-                "      GROUP BY film_id " +
-                ") r ON f.id =  r.film_id " +
                 "WHERE f.id IN (SELECT l.film_id FROM likes AS l" +
                 " WHERE l.user_id = ? or l.user_id = ? " +
                 " GROUP BY l.film_id HAVING Count(*)>1)" +
-                "ORDER BY r.rating DESC;";
+                "ORDER BY f.likes_count DESC, f.id;";
 
-        return jdbcTemplate.query(sqlQuery, this::mapRow, id, friendId);
+        return hydrate(jdbcTemplate.query(sqlQuery, this::mapRow, id, friendId));
     }
 
     public List<Film> getRecommendation(long id) {
         String sql =
-                "SELECT fl.id, fl.name, fl.description, fl.release_date, fl.duration, fl.mpa_id, m.name mpa" +
-                        " FROM films fl JOIN mpa m ON m.id = fl.mpa_id " +
+                "SELECT fl.id, fl.name, fl.description, fl.release_date, fl.duration, fl.mpa_id" +
+                        " FROM films fl " +
                         " WHERE fl.id IN (" +
                         "       SELECT DISTINCT l.film_id FROM likes  l " +
                         " WHERE l.user_id IN (" +
@@ -296,13 +394,14 @@ public class FilmDbStorage implements FilmStorage {
                         "   AND l.film_id NOT IN " +
                         "       (SELECT l.film_id FROM likes  l" +
                         " WHERE l.user_id = ?))";
-        return jdbcTemplate.query(sql, this::mapRow, id, id, id);
+        return hydrate(jdbcTemplate.query(sql, this::mapRow, id, id, id));
     }
 
     private Film mapRow(ResultSet resultSet, long rowNum) throws SQLException {
-        Mpa mpa = Mpa.builder()
-                .id(resultSet.getLong("mpa_id"))
-                .name(resultSet.getString("mpa"))
+        long mpaId = resultSet.getLong("mpa_id");
+        Mpa mpa = resultSet.wasNull() ? null : Mpa.builder()
+                .id(mpaId)
+                .name(mpaDictionary.getName(mpaId))
                 .build();
         return Film.builder()
                 .id(resultSet.getLong("id"))
@@ -311,28 +410,115 @@ public class FilmDbStorage implements FilmStorage {
                 .releaseDate(resultSet.getDate("release_date").toLocalDate())
                 .duration(resultSet.getLong("duration"))
                 .mpa(mpa)
-                .genres(getFilmGenresById(resultSet.getLong("id")))
-                .directors(getFilmDirectorsById(resultSet.getLong("id")))
                 .build();
     }
 
-    private List<Genre> getFilmGenresById(long id) {
+    private List<Film> hydrate(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        List<Long> ids = films.stream().map(Film::getId).distinct().collect(Collectors.toList());
+        Map<Long, List<Genre>> genres = new HashMap<>();
+        Map<Long, List<Director>> directors = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += HYDRATION_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + HYDRATION_CHUNK_SIZE, ids.size()));
+            loadFilmsGenres(chunk, genres);
+            loadFilmsDirectors(chunk, directors);
+        }
+        for (Film film : films) {
+            film.setGenres(genres.getOrDefault(film.getId(), new ArrayList<>()));
+            film.setDirectors(directors.getOrDefault(film.getId(), new ArrayList<>()));
+        }
+        return films;
+    }
+
+    private void loadFilmsGenres(List<Long> filmIds, Map<Long, List<Genre>> genres) {
         String sqlQuery =
-                "SELECT g.id, g.name " +
+                "SELECT f.film_id, f.genre_id " +
                         "FROM films_genres f " +
-                        "JOIN genres g " +
-                        "    ON g.id = f.genre_id " +
-                        "WHERE f.film_id = ?;";
-        return jdbcTemplate.query(sqlQuery, new BeanPropertyRowMapper<>(Genre.class), id);
+                        "WHERE f.film_id IN (" + placeholders(filmIds.size()) + ") " +
+                        "ORDER BY f.film_id, f.genre_id;";
+        jdbcTemplate.query(sqlQuery, rs -> {
+            long genreId = rs.getLong("genre_id");
+            Genre genre = Genre.builder()
+                    .id(genreId)
+                    .name(genreDictionary.getName(genreId))
+                    .build();
+            genres.computeIfAbsent(rs.getLong("film_id"), k -> new ArrayList<>()).add(genre);
+        }, filmIds.toArray());
     }
 
-    private List<Director> getFilmDirectorsById(long id) {
+    private void loadFilmsDirectors(List<Long> filmIds, Map<Long, List<Director>> directors) {
         String sqlQuery =
-                "SELECT d.id, d.name " +
+                "SELECT f.film_id, d.id, d.name " +
                         "FROM directors d " +
                         "JOIN films_directors f " +
                         "ON f.director_id = d.id " +
-                        "WHERE f.film_id = ?;";
-        return jdbcTemplate.query(sqlQuery, new BeanPropertyRowMapper<>(Director.class), id);
+                        "WHERE f.film_id IN (" + placeholders(filmIds.size()) + ");";
+        jdbcTemplate.query(sqlQuery, rs -> {
+            Director director = new Director();
+            director.setId(rs.getLong("id"));
+            director.setName(rs.getString("name"));
+            directors.computeIfAbsent(rs.getLong("film_id"), k -> new ArrayList<>()).add(director);
+        }, filmIds.toArray());
+    }
+
+    private void saveLinks(String sqlQuery, List<long[]> links) {
+        if (links.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sqlQuery, links, links.size(), (statement, link) -> {
+            statement.setLong(1, link[0]);
+            statement.setLong(2, link[1]);
+        });
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    // Rows of one film are adjacent (ordered by id); genre x director combinations are collapsed by id.
+    private class FilmExportHandler implements RowCallbackHandler {
+
+        private final Consumer<Film> consumer;
+        private final Map<Long, Genre> genres = new LinkedHashMap<>();
+        private final Map<Long, Director> directors = new LinkedHashMap<>();
+        private Film current;
+
+        private FilmExportHandler(Consumer<Film> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long filmId = rs.getLong("id");
+            if (current == null || current.getId() != filmId) {
+                flush();
+                current = mapRow(rs, 0);
+            }
+            long genreId = rs.getLong("genre_id");
+            if (!rs.wasNull() && !genres.containsKey(genreId)) {
+                genres.put(genreId, Genre.builder().id(genreId).name(genreDictionary.getName(genreId)).build());
+            }
+            long directorId = rs.getLong("director_id");
+            if (!rs.wasNull() && !directors.containsKey(directorId)) {
+                Director director = new Director();
+                director.setId(directorId);
+                director.setName(rs.getString("director_name"));
+                directors.put(directorId, director);
+            }
+        }
+
+        private void flush() {
+            if (current == null) {
+                return;
+            }
+            current.setGenres(new ArrayList<>(genres.values()));
+            current.setDirectors(new ArrayList<>(directors.values()));
+            consumer.accept(current);
+            current = null;
+            genres.clear();
+            directors.clear();
+        }
     }
-}
\ No newline at end of file
+}
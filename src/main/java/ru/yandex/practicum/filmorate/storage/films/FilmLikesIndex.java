@@ -0,0 +1,222 @@
+package ru.yandex.practicum.filmorate.storage.films;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.LongArrays;
+import ru.yandex.practicum.filmorate.util.LongBitmap;
+import ru.yandex.practicum.filmorate.util.LongIntCounter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+public class FilmLikesIndex {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int neighbours;
+    private final int maxFilmFanOut;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, LongBitmap> userFilms = new HashMap<>();
+    private final Map<Long, long[]> filmUsers = new HashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final Map<Like, Long> pendingRefreshes = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    @Autowired
+    public FilmLikesIndex(
+            JdbcTemplate jdbcTemplate,
+            @Value("${filmorate.recommendations.neighbours:50}") int neighbours,
+            @Value("${filmorate.recommendations.max-film-fan-out:10000}") int maxFilmFanOut
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.neighbours = neighbours;
+        this.maxFilmFanOut = maxFilmFanOut;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            userFilms.clear();
+            filmUsers.clear();
+            Map<Long, List<Long>> byFilm = new HashMap<>();
+            jdbcTemplate.query("SELECT film_id, user_id FROM likes;", rs -> {
+                long filmId = rs.getLong("film_id");
+                long userId = rs.getLong("user_id");
+                userFilms.computeIfAbsent(userId, k -> new LongBitmap()).add(filmId);
+                byFilm.computeIfAbsent(filmId, k -> new ArrayList<>()).add(userId);
+            });
+            byFilm.forEach((filmId, users) -> filmUsers.put(filmId, toSortedArray(users)));
+            ready = true;
+            log.debug("Loaded likes of {} users for {} films.", userFilms.size(), filmUsers.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Called after the like change is committed. The like is re-read outside the lock; only the latest refresh
+    // of a like applies its read, so late callbacks can't resurrect it.
+    public void refreshLike(long filmId, long userId) {
+        Like like = new Like(filmId, userId);
+        long version = versions.incrementAndGet();
+        pendingRefreshes.merge(like, version, Math::max);
+        String sqlQuery = "SELECT COUNT(user_id) FROM likes WHERE film_id = ? AND user_id = ?;";
+        Integer likes = jdbcTemplate.queryForObject(sqlQuery, Integer.class, filmId, userId);
+        lock.writeLock().lock();
+        try {
+            if (!pendingRefreshes.remove(like, version)) {
+                return;
+            }
+            if (likes != null && likes > 0) {
+                userFilms.computeIfAbsent(userId, k -> new LongBitmap()).add(filmId);
+                put(filmUsers, filmId, LongArrays.insert(filmUsers.getOrDefault(filmId, LongArrays.EMPTY), userId));
+            } else {
+                removeUserFilm(userId, filmId);
+                put(filmUsers, filmId, LongArrays.remove(filmUsers.getOrDefault(filmId, LongArrays.EMPTY), userId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            for (long userId : filmUsers.getOrDefault(filmId, LongArrays.EMPTY)) {
+                removeUserFilm(userId, filmId);
+            }
+            filmUsers.remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long[] removeUser(long userId) {
+        lock.writeLock().lock();
+        try {
+            LongBitmap liked = userFilms.remove(userId);
+            long[] films = liked == null ? LongArrays.EMPTY : liked.toArray();
+            for (long filmId : films) {
+                put(filmUsers, filmId, LongArrays.remove(filmUsers.getOrDefault(filmId, LongArrays.EMPTY), userId));
+            }
+            return films;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long[] commonFilms(long userId, long otherUserId) {
+        lock.readLock().lock();
+        try {
+            LongBitmap liked = userFilms.get(userId);
+            LongBitmap otherLiked = userFilms.get(otherUserId);
+            if (liked == null || otherLiked == null) {
+                return LongArrays.EMPTY;
+            }
+            return liked.and(otherLiked).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Scores unseen films by the Jaccard similarity of the top neighbours who liked them. Films liked by more than
+    // maxFilmFanOut users contribute an evenly spaced sample of their users from a random offset.
+    public List<Long> recommendFilms(long userId, int count) {
+        lock.readLock().lock();
+        try {
+            LongBitmap liked = userFilms.get(userId);
+            if (liked == null) {
+                return new ArrayList<>();
+            }
+            long likedCount = liked.cardinality();
+            LongIntCounter overlaps = new LongIntCounter((int) likedCount * 4);
+            for (long filmId : liked.toArray()) {
+                long[] users = filmUsers.getOrDefault(filmId, LongArrays.EMPTY);
+                int sampled = Math.min(users.length, maxFilmFanOut);
+                int start = users.length > maxFilmFanOut ? ThreadLocalRandom.current().nextInt(users.length) : 0;
+                for (int i = 0; i < sampled; i++) {
+                    long otherId = users[(int) ((start + (long) i * users.length / sampled) % users.length)];
+                    if (otherId != userId) {
+                        overlaps.increment(otherId);
+                    }
+                }
+            }
+            PriorityQueue<Neighbour> nearest = new PriorityQueue<>(Comparator.comparingDouble(Neighbour::getSimilarity));
+            overlaps.forEach((otherId, overlap) -> {
+                long otherLikes = userFilms.get(otherId).cardinality();
+                double similarity = (double) overlap / (likedCount + otherLikes - overlap);
+                nearest.add(new Neighbour(otherId, similarity));
+                if (nearest.size() > neighbours) {
+                    nearest.poll();
+                }
+            });
+            Map<Long, Double> scores = new HashMap<>();
+            for (Neighbour neighbour : nearest) {
+                for (long filmId : userFilms.get(neighbour.getUserId()).toArray()) {
+                    if (!liked.contains(filmId)) {
+                        scores.merge(filmId, neighbour.getSimilarity(), Double::sum);
+                    }
+                }
+            }
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(count)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long[] toSortedArray(List<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+    }
+
+    private void removeUserFilm(long userId, long filmId) {
+        LongBitmap liked = userFilms.get(userId);
+        if (liked != null && liked.remove(filmId) && liked.isEmpty()) {
+            userFilms.remove(userId);
+        }
+    }
+
+    private static void put(Map<Long, long[]> postings, long key, long[] ids) {
+        if (ids.length == 0) {
+            postings.remove(key);
+        } else {
+            postings.put(key, ids);
+        }
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Like {
+        private final long filmId;
+        private final long userId;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Neighbour {
+        private final long userId;
+        private final double similarity;
+    }
+}
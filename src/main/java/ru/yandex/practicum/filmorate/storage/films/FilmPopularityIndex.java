@@ -0,0 +1,211 @@
+package ru.yandex.practicum.filmorate.storage.films;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Component
+public class FilmPopularityIndex {
+
+    private static final Comparator<Entry> BY_POPULARITY = Comparator
+            .comparingLong((Entry entry) -> -entry.getLikes())
+            .thenComparingLong(Entry::getFilmId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Partition, NavigableSet<Entry>> partitions = new HashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private volatile boolean ready;
+
+    @Autowired
+    public FilmPopularityIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            partitions.clear();
+            long version = versions.incrementAndGet();
+            Map<Long, Set<Long>> genres = new HashMap<>();
+            jdbcTemplate.query("SELECT film_id, genre_id FROM films_genres;", rs -> {
+                genres.computeIfAbsent(rs.getLong("film_id"), k -> new HashSet<>()).add(rs.getLong("genre_id"));
+            });
+            String sqlQuery = "SELECT f.id, " +
+                    "YEAR(f.release_date) release_year, " +
+                    "(SELECT COUNT(l.user_id) FROM likes l WHERE l.film_id = f.id) likes " +
+                    "FROM films f;";
+            jdbcTemplate.query(sqlQuery, rs -> {
+                long filmId = rs.getLong("id");
+                add(new Entry(
+                        filmId,
+                        rs.getLong("likes"),
+                        rs.getInt("release_year"),
+                        genres.getOrDefault(filmId, Collections.emptySet()),
+                        version
+                ));
+            });
+            ready = true;
+            log.debug("Loaded popularity index of {} films.", entries.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<Long> getPopularFilmIds(long count, Long genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> partition = partitions.get(new Partition(genreId, year));
+            if (partition == null) {
+                return new ArrayList<>();
+            }
+            List<Long> ids = new ArrayList<>((int) Math.min(count, partition.size()));
+            for (Entry entry : partition) {
+                if (ids.size() >= count) {
+                    break;
+                }
+                ids.add(entry.getFilmId());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Long> sortByPopularity(long[] filmIds) {
+        List<Entry> found = new ArrayList<>(filmIds.length);
+        lock.readLock().lock();
+        try {
+            for (long filmId : filmIds) {
+                Entry entry = entries.get(filmId);
+                found.add(entry == null ? new Entry(filmId, 0, 0, Collections.emptySet(), 0) : entry);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        found.sort(BY_POPULARITY);
+        List<Long> ids = new ArrayList<>(found.size());
+        for (Entry entry : found) {
+            ids.add(entry.getFilmId());
+        }
+        return ids;
+    }
+
+    public void putFilm(Film film) {
+        Set<Long> genreIds = new HashSet<>();
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                genreIds.add(genre.getId());
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            Entry previous = remove(film.getId());
+            long likes = previous == null ? 0 : previous.getLikes();
+            long version = previous == null ? 0 : previous.getVersion();
+            add(new Entry(film.getId(), likes, film.getReleaseDate().getYear(), genreIds, version));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called after the like is committed. The counter is read outside the lock; a version taken before the read
+    // keeps a slow refresh from overwriting a counter read later.
+    public void refreshLikes(long filmId) {
+        long version = versions.incrementAndGet();
+        String sqlQuery = "SELECT likes_count FROM films WHERE id = ?;";
+        List<Long> likes = jdbcTemplate.queryForList(sqlQuery, Long.class, filmId);
+        if (likes.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.get(filmId);
+            if (previous == null || previous.getVersion() > version) {
+                return;
+            }
+            remove(filmId);
+            add(new Entry(filmId, likes.get(0), previous.getYear(), previous.getGenreIds(), version));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Entry entry) {
+        entries.put(entry.getFilmId(), entry);
+        for (Partition partition : partitionsOf(entry)) {
+            partitions.computeIfAbsent(partition, k -> new TreeSet<>(BY_POPULARITY)).add(entry);
+        }
+    }
+
+    private Entry remove(long filmId) {
+        Entry entry = entries.remove(filmId);
+        if (entry == null) {
+            return null;
+        }
+        for (Partition partition : partitionsOf(entry)) {
+            NavigableSet<Entry> films = partitions.get(partition);
+            if (films != null) {
+                films.remove(entry);
+                if (films.isEmpty()) {
+                    partitions.remove(partition);
+                }
+            }
+        }
+        return entry;
+    }
+
+    private static List<Partition> partitionsOf(Entry entry) {
+        List<Partition> result = new ArrayList<>(2 + 2 * entry.getGenreIds().size());
+        result.add(new Partition(null, null));
+        result.add(new Partition(null, entry.getYear()));
+        for (Long genreId : entry.getGenreIds()) {
+            result.add(new Partition(genreId, null));
+            result.add(new Partition(genreId, entry.getYear()));
+        }
+        return result;
+    }
+
+    @Value
+    private static class Entry {
+        long filmId;
+        long likes;
+        int year;
+        Set<Long> genreIds;
+        long version;
+    }
+
+    @Value
+    private static class Partition {
+        Long genreId;
+        Integer year;
+    }
+}
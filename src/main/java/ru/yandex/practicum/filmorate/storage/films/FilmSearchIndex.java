@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage.films;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.TrigramIndex;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Component
+public class FilmSearchIndex {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TrigramIndex titles = new TrigramIndex();
+    private volatile boolean ready;
+
+    @Autowired
+    public FilmSearchIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            Map<Long, String> names = new HashMap<>();
+            jdbcTemplate.query("SELECT id, name FROM films;", rs -> {
+                names.put(rs.getLong("id"), rs.getString("name"));
+            });
+            titles.load(names);
+            ready = true;
+            log.debug("Loaded title index of {} films.", titles.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Queries shorter than three characters scan every title in memory, which is still cheaper than LIKE in SQL.
+    public long[] searchByTitle(String query) {
+        lock.readLock().lock();
+        try {
+            return titles.search(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void putFilm(long filmId, String name) {
+        lock.writeLock().lock();
+        try {
+            titles.put(filmId, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            titles.remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -4,16 +4,25 @@ import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Optional<Film> loadFilm(long id);
 
+    boolean existsFilm(long id);
+
     long saveFilm(Film film);
 
+    List<Long> saveFilms(List<Film> films);
+
     void updateFilm(Film film);
 
-    List<Film> loadFilms();
+    List<Film> loadFilms(long afterId, int limit);
+
+    List<Film> loadFilmsByIds(List<Long> ids);
+
+    void exportFilms(Consumer<Film> consumer);
 
     void saveLikeFromUser(long filmId, long userId);
 
@@ -21,6 +30,8 @@ public interface FilmStorage {
 
     boolean hasFilmLikeFromUser(long filmId, long userId);
 
+    int rebuildLikesCounters();
+
     List<Film> loadPopularFilms(long count, Long genreId, Integer year);
 
     void deleteFilm(long filmId);
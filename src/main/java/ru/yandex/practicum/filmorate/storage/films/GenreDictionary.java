@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage.films;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.List;
+
+@Component
+public class GenreDictionary extends NamedDictionary<Genre> {
+
+    private final GenreStorage genreStorage;
+
+    @Autowired
+    public GenreDictionary(GenreStorage genreStorage) {
+        super("genres");
+        this.genreStorage = genreStorage;
+    }
+
+    @Override
+    protected List<Genre> loadAll() {
+        return genreStorage.loadAllGenres();
+    }
+
+    @Override
+    protected String nameOf(Genre genre) {
+        return genre.getName();
+    }
+
+    @Override
+    protected Genre create(long id, String name) {
+        return Genre.builder().id(id).name(name).build();
+    }
+}
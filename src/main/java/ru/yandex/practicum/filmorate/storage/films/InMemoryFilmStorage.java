@@ -4,6 +4,7 @@ import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Component("inMemoryFilmStorage")
@@ -24,6 +25,11 @@ public class InMemoryFilmStorage implements FilmStorage {
         return Optional.ofNullable(films.get(id));
     }
 
+    @Override
+    public boolean existsFilm(long id) {
+        return films.containsKey(id);
+    }
+
     @Override
     public long saveFilm(Film film) {
         if (film.getId() == 0) film.setId(++filmIdGenerator);
@@ -31,14 +37,42 @@ public class InMemoryFilmStorage implements FilmStorage {
         return film.getId();
     }
 
+    @Override
+    public List<Long> saveFilms(List<Film> films) {
+        List<Long> ids = new ArrayList<>(films.size());
+        for (Film film : films) {
+            ids.add(saveFilm(film));
+        }
+        return ids;
+    }
+
     @Override
     public void updateFilm(Film film) {
         films.put(film.getId(), film);
     }
 
     @Override
-    public ArrayList<Film> loadFilms() {
-        return new ArrayList<>(films.values());
+    public List<Film> loadFilms(long afterId, int limit) {
+        return films.values().stream()
+                .filter(film -> film.getId() > afterId)
+                .sorted(Comparator.comparingLong(Film::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> loadFilmsByIds(List<Long> ids) {
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void exportFilms(Consumer<Film> consumer) {
+        films.values().stream()
+                .sorted(Comparator.comparingLong(Film::getId))
+                .forEach(consumer);
     }
 
     @Override
@@ -61,6 +95,11 @@ public class InMemoryFilmStorage implements FilmStorage {
         return filmLikes.map(l -> l.contains(userId)).orElse(false);
     }
 
+    @Override
+    public int rebuildLikesCounters() {
+        return 0;
+    }
+
     @Override
     public List<Film> loadPopularFilms(long count, Long genreId, Integer year) {
         return new ArrayList<>(films.values()).stream()
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage.films;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.util.List;
+
+@Component
+public class MpaDictionary extends NamedDictionary<Mpa> {
+
+    private final MpaStorage mpaStorage;
+
+    @Autowired
+    public MpaDictionary(MpaStorage mpaStorage) {
+        super("MPA");
+        this.mpaStorage = mpaStorage;
+    }
+
+    @Override
+    protected List<Mpa> loadAll() {
+        return mpaStorage.loadAllMpa();
+    }
+
+    @Override
+    protected String nameOf(Mpa mpa) {
+        return mpa.getName();
+    }
+
+    @Override
+    protected Mpa create(long id, String name) {
+        return Mpa.builder().id(id).name(name).build();
+    }
+}
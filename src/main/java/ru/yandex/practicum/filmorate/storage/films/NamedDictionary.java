@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage.films;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import ru.yandex.practicum.filmorate.model.Id;
+
+import java.util.*;
+
+// Immutable snapshot of a table of named ids; reload() swaps in a new one. Callers get fresh instances.
+@Slf4j
+public abstract class NamedDictionary<T extends Id> {
+
+    private final String label;
+    private volatile Map<Long, String> names;
+
+    protected NamedDictionary(String label) {
+        this.label = label;
+    }
+
+    public Optional<T> get(long id) {
+        String name = names().get(id);
+        return name == null ? Optional.empty() : Optional.of(create(id, name));
+    }
+
+    public String getName(long id) {
+        return names().get(id);
+    }
+
+    public boolean contains(long id) {
+        return names().containsKey(id);
+    }
+
+    public List<T> getAll() {
+        List<T> values = new ArrayList<>();
+        names().forEach((id, name) -> values.add(create(id, name)));
+        return values;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reload() {
+        Map<Long, String> loaded = new TreeMap<>();
+        for (T value : loadAll()) {
+            loaded.put(value.getId(), nameOf(value));
+        }
+        names = Collections.unmodifiableMap(loaded);
+        log.debug("Loaded {} {} into the dictionary.", loaded.size(), label);
+    }
+
+    protected abstract List<T> loadAll();
+
+    protected abstract String nameOf(T value);
+
+    protected abstract T create(long id, String name);
+
+    private Map<Long, String> names() {
+        Map<Long, String> current = names;
+        if (current == null) {
+            synchronized (this) {
+                if (names == null) {
+                    reload();
+                }
+                current = names;
+            }
+        }
+        return current;
+    }
+}
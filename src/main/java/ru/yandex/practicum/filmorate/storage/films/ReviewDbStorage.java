@@ -29,15 +29,10 @@ public class ReviewDbStorage implements ReviewStorage {
     public Optional<Review> loadReview(long id) {
 
         String sqlQuery =
-                "SELECT  id ,r.film_id, r.user_id, " +
-                        "r.is_positive, r.content, " +
-                        "COALESCE(SUM(CASE WHEN rr.useful THEN 1 WHEN rr.USEFUL = false THEN -1 ELSE 0 END)," +
-                        " 0) as useful " +
+                "SELECT r.id, r.film_id, r.user_id, " +
+                        "r.is_positive, r.content, r.useful " +
                         "FROM reviews r " +
-                        "LEFT JOIN review_rating rr" +
-                        "  ON r.id = rr.review_id " +
-                        "WHERE r.id = ? " +
-                        "GROUP BY  r.id;";
+                        "WHERE r.id = ?;";
 
         return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> mapRow(rs, id), id).stream().findAny();
     }
@@ -91,57 +86,91 @@ public class ReviewDbStorage implements ReviewStorage {
     public List<Review> loadReviewsByFilm(long film_id, int count) {
 
         String sqlQuery = "SELECT r.id, r.film_id, r.user_id, " +
-                "r.is_positive, r.content, " +
-                "COALESCE(SUM(CASE WHEN rr.useful THEN 1 WHEN rr.useful = false THEN -1 ELSE 0 END), 0) as useful " +
+                "r.is_positive, r.content, r.useful " +
                 "FROM reviews r " +
-                "LEFT JOIN review_rating rr" +
-                "  ON r.id = rr.review_id " +
                 "WHERE r.film_id = ? " +
-                "GROUP BY r.film_id, id " +
-                "ORDER BY useful DESC " +
+                "ORDER BY r.useful DESC, r.id " +
                 "LIMIT ?";
 
         return jdbcTemplate.query(sqlQuery, this::mapRow, film_id, count);
     }
 
+    // Keyset page on (useful DESC, id): the cursor is the useful score and id of the last review of the previous page.
+    // The leading useful <= ? bound lets the predicate start a range scan of reviews_useful_index.
     @Override
-    public List<Review> loadReviews() {
-        String sqlQuery = "SELECT r.id as id, r.film_id, r.user_id, " +
-                "r.is_positive, r.content, " +
-                "COALESCE(SUM(CASE WHEN rr.useful THEN 1 WHEN rr.USEFUL = false THEN -1 ELSE 0 END), 0) as useful " +
+    public List<Review> loadReviews(int count, Long afterUseful, Long afterId) {
+        if (afterUseful == null || afterId == null) {
+            String sqlQuery = "SELECT r.id, r.film_id, r.user_id, " +
+                    "r.is_positive, r.content, r.useful " +
+                    "FROM reviews r " +
+                    "ORDER BY r.useful DESC, r.id " +
+                    "LIMIT ?";
+            return jdbcTemplate.query(sqlQuery, this::mapRow, count);
+        }
+        String sqlQuery = "SELECT r.id, r.film_id, r.user_id, " +
+                "r.is_positive, r.content, r.useful " +
                 "FROM reviews r " +
-                "LEFT JOIN review_rating rr" +
-                "  ON r.id = rr.review_id " +
-                "GROUP BY film_id, ID " +
-                "ORDER BY USEFUL DESC ";
-
-        return jdbcTemplate.query(sqlQuery, this::mapRow);
+                "WHERE r.useful <= ? AND (r.useful < ? OR r.id > ?) " +
+                "ORDER BY r.useful DESC, r.id " +
+                "LIMIT ?";
+        return jdbcTemplate.query(sqlQuery, this::mapRow, afterUseful, afterUseful, afterId, count);
     }
 
+    // The review row is locked first, so concurrent votes on a review are applied one after another and each
+    // score update reads the vote committed before it. This costs a third statement per vote.
     @Override
-    public void saveLikeFromUser(long reviewId, long userId) {
-        String sqlQuery = "INSERT INTO REVIEW_RATING (review_id, user_id, useful) " +
+    public void saveVoteFromUser(long reviewId, long userId, boolean useful) {
+        lockReview(reviewId);
+        String sqlUseful = "UPDATE reviews r " +
+                "SET useful = useful + ? - COALESCE((" +
+                "    SELECT CASE WHEN rr.useful THEN 1 ELSE -1 END" +
+                "    FROM review_rating rr" +
+                "    WHERE rr.review_id = ? AND rr.user_id = ?" +
+                "), 0) " +
+                "WHERE r.id = ?";
+        jdbcTemplate.update(sqlUseful, useful ? 1 : -1, reviewId, userId, reviewId);
+        String sqlVote = "MERGE INTO review_rating (review_id, user_id, useful) " +
+                "KEY (review_id, user_id) " +
                 "VALUES (?, ?, ?)";
-        jdbcTemplate.update(sqlQuery, reviewId, userId, true);
+        jdbcTemplate.update(sqlVote, reviewId, userId, useful);
     }
 
     @Override
-    public void saveDislikeFromUser(long reviewId, long userId) {
-        String sqlQuery = "INSERT INTO REVIEW_RATING (review_id, user_id, useful) " +
-                "VALUES (?, ?, ?)";
-        jdbcTemplate.update(sqlQuery, reviewId, userId, false);
+    public void deleteVoteFromUser(long reviewId, long userId, boolean useful) {
+        lockReview(reviewId);
+        String sqlUseful = "UPDATE reviews r " +
+                "SET useful = useful - ? " +
+                "WHERE r.id = ? AND EXISTS (" +
+                "    SELECT 1 FROM review_rating rr" +
+                "    WHERE rr.review_id = ? AND rr.user_id = ? AND rr.useful = ?" +
+                ")";
+        jdbcTemplate.update(sqlUseful, useful ? 1 : -1, reviewId, reviewId, userId, useful);
+        String sqlVote = "DELETE FROM review_rating " +
+                "WHERE review_id = ? AND user_id = ? AND useful = ?";
+        jdbcTemplate.update(sqlVote, reviewId, userId, useful);
     }
 
-    @Override
-    public void deleteLikeFromUser(long reviewId, long userId) {
-        String sqlQuery = "DELETE FROM review_rating WHERE review_id = ? AND user_id = ? AND useful = TRUE";
-        jdbcTemplate.update(sqlQuery, reviewId, userId);
+    // Held until the caller's transaction ends. A statement sees the rows committed when it starts, so the vote
+    // can't be read by the locking query itself.
+    private void lockReview(long reviewId) {
+        String sqlQuery = "SELECT id FROM reviews WHERE id = ? FOR UPDATE";
+        if (jdbcTemplate.queryForList(sqlQuery, Long.class, reviewId).isEmpty()) {
+            throw new NotFoundException("Review #" + reviewId + " not found.");
+        }
+    }
+
+    private static int score(boolean useful) {
+        return useful ? 1 : -1;
     }
 
     @Override
-    public void deleteDislikeFromUser(long reviewId, long userId) {
-        String sqlQuery = "DELETE FROM REVIEW_RATING WHERE review_id = ? AND user_id = ? AND useful = FALSE";
-        jdbcTemplate.update(sqlQuery, reviewId, userId);
+    public int rebuildUsefulScores() {
+        String sqlUseful = "SELECT COALESCE(SUM(CASE WHEN rr.useful THEN 1 ELSE -1 END), 0) " +
+                "FROM review_rating rr WHERE rr.review_id = r.id";
+        String sqlQuery = "UPDATE reviews r " +
+                "SET useful = (" + sqlUseful + ") " +
+                "WHERE useful <> (" + sqlUseful + ");";
+        return jdbcTemplate.update(sqlQuery);
     }
 
     @Override
@@ -14,17 +14,15 @@ public interface ReviewStorage {
 
     void updateReview(Review review);
 
-    List<Review> loadReviews();
+    List<Review> loadReviews(int count, Long afterUseful, Long afterId);
 
     List<Review> loadReviewsByFilm(long filmId, int count);
 
-    void saveLikeFromUser(long reviewId, long userId);
+    void saveVoteFromUser(long reviewId, long userId, boolean useful);
 
-    void saveDislikeFromUser(long reviewId, long userId);
+    void deleteVoteFromUser(long reviewId, long userId, boolean useful);
 
-    void deleteLikeFromUser(long reviewId, long userId);
-
-    void deleteDislikeFromUser(long reviewId, long userId);
+    int rebuildUsefulScores();
 
     void deleteReview(long reviewId);
 }
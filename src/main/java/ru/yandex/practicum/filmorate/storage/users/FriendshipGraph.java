@@ -0,0 +1,229 @@
+package ru.yandex.practicum.filmorate.storage.users;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.LongArrays;
+import ru.yandex.practicum.filmorate.util.LongIntCounter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Component
+public class FriendshipGraph {
+
+    private static final int STRIPES = 64;
+    // Long enough for any afterCommit callback of a change committed before the delete to have run.
+    private static final long TOMBSTONE_TTL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final Comparator<Suggestion> WORST_FIRST = Comparator
+            .comparingInt(Suggestion::getMutualFriends)
+            .thenComparing(Comparator.comparingLong(Suggestion::getUserId).reversed());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, long[]> outgoing = new ConcurrentHashMap<>();
+    private final Map<Long, long[]> incoming = new ConcurrentHashMap<>();
+    private final Map<Long, long[]> acceptedIncoming = new ConcurrentHashMap<>();
+    private final Map<Long, long[]> acceptedOutgoing = new ConcurrentHashMap<>();
+    private final ReadWriteLock loadLock = new ReentrantReadWriteLock();
+    private final Lock[] stripes = new Lock[STRIPES];
+    private final Map<Long, Long> removedUsers = new ConcurrentHashMap<>();
+    private final int maxFanOut;
+    private volatile boolean ready;
+
+    @Autowired
+    public FriendshipGraph(
+            JdbcTemplate jdbcTemplate,
+            @Value("${filmorate.friends.suggestions.max-fan-out:1000}") int maxFanOut
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxFanOut = maxFanOut;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        loadLock.writeLock().lock();
+        try {
+            outgoing.clear();
+            incoming.clear();
+            acceptedIncoming.clear();
+            acceptedOutgoing.clear();
+            jdbcTemplate.query("SELECT user_id, friend_id, status FROM friends;", rs -> {
+                setEdge(
+                        rs.getLong("user_id"),
+                        rs.getLong("friend_id"),
+                        true,
+                        FriendshipStatus.ACCEPTED.name().equals(rs.getString("status"))
+                );
+            });
+            ready = true;
+            log.debug("Loaded friendship graph of {} users.", outgoing.size());
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean isExistFriendship(long userId, long friendId) {
+        return LongArrays.contains(outgoing.getOrDefault(userId, LongArrays.EMPTY), friendId);
+    }
+
+    public long[] getFriendIds(long userId) {
+        return LongArrays.union(
+                outgoing.getOrDefault(userId, LongArrays.EMPTY),
+                acceptedIncoming.getOrDefault(userId, LongArrays.EMPTY)
+        );
+    }
+
+    public long[] getCommonFriendIds(long userId, long otherUserId) {
+        return LongArrays.intersect(getFriendIds(userId), getFriendIds(otherUserId));
+    }
+
+    // A mutual friend of the user and a candidate is a friend of both, with getFriendIds semantics on each side.
+    // Both hops are capped, so users with huge friend lists and celebrity friends cost at most maxFanOut^2 steps.
+    // Ids are sorted by mutual friends descending, then by id.
+    public long[] suggestFriends(long userId, int limit) {
+        long[] friendIds = getFriendIds(userId);
+        LongIntCounter mutualFriends = new LongIntCounter(Math.min(friendIds.length, maxFanOut) * 8);
+        for (int i = 0; i < friendIds.length && i < maxFanOut; i++) {
+            long[] candidates = getBefriendingIds(friendIds[i]);
+            for (int j = 0; j < candidates.length && j < maxFanOut; j++) {
+                if (candidates[j] != userId && !LongArrays.contains(friendIds, candidates[j])) {
+                    mutualFriends.increment(candidates[j]);
+                }
+            }
+        }
+        PriorityQueue<Suggestion> best = new PriorityQueue<>(WORST_FIRST);
+        mutualFriends.forEach((candidateId, count) -> {
+            best.add(new Suggestion(candidateId, count));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        });
+        long[] ids = new long[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = best.poll().getUserId();
+        }
+        return ids;
+    }
+
+    // Called after the change is committed. Edges of recently removed users are ignored, so a callback that runs
+    // after the user's delete can't resurrect them.
+    public void putFriendship(long userId, long friendId, boolean accepted) {
+        Lock stripe = stripeOf(userId, friendId);
+        loadLock.readLock().lock();
+        stripe.lock();
+        try {
+            if (!removedUsers.containsKey(userId) && !removedUsers.containsKey(friendId)) {
+                setEdge(userId, friendId, true, accepted);
+            }
+        } finally {
+            stripe.unlock();
+            loadLock.readLock().unlock();
+        }
+    }
+
+    public void removeFriendship(long userId, long friendId) {
+        Lock stripe = stripeOf(userId, friendId);
+        loadLock.readLock().lock();
+        stripe.lock();
+        try {
+            setEdge(userId, friendId, false, false);
+        } finally {
+            stripe.unlock();
+            loadLock.readLock().unlock();
+        }
+    }
+
+    // Holds every stripe, so edges being applied concurrently are either visible here or see the user as removed.
+    // Called after the delete is committed; tombstones older than the TTL are dropped here.
+    public void removeUser(long userId) {
+        loadLock.readLock().lock();
+        for (Lock stripe : stripes) {
+            stripe.lock();
+        }
+        try {
+            long now = System.nanoTime();
+            removedUsers.values().removeIf(removedAt -> now - removedAt > TOMBSTONE_TTL_NANOS);
+            removedUsers.put(userId, now);
+            for (long friendId : outgoing.getOrDefault(userId, LongArrays.EMPTY)) {
+                setEdge(userId, friendId, false, false);
+            }
+            for (long otherId : incoming.getOrDefault(userId, LongArrays.EMPTY)) {
+                setEdge(otherId, userId, false, false);
+            }
+        } finally {
+            for (Lock stripe : stripes) {
+                stripe.unlock();
+            }
+            loadLock.readLock().unlock();
+        }
+    }
+
+    // Users whose friends include the given user: their own requests to it and its accepted requests to them.
+    private long[] getBefriendingIds(long userId) {
+        return LongArrays.union(
+                incoming.getOrDefault(userId, LongArrays.EMPTY),
+                acceptedOutgoing.getOrDefault(userId, LongArrays.EMPTY)
+        );
+    }
+
+    private Lock stripeOf(long userId, long friendId) {
+        long pair = Math.min(userId, friendId) * 31 + Math.max(userId, friendId);
+        return stripes[Long.hashCode(pair) & (STRIPES - 1)];
+    }
+
+    private void setEdge(long userId, long friendId, boolean present, boolean accepted) {
+        if (present) {
+            insert(outgoing, userId, friendId);
+            insert(incoming, friendId, userId);
+            if (accepted) {
+                insert(acceptedIncoming, friendId, userId);
+                insert(acceptedOutgoing, userId, friendId);
+            } else {
+                remove(acceptedIncoming, friendId, userId);
+                remove(acceptedOutgoing, userId, friendId);
+            }
+        } else {
+            remove(outgoing, userId, friendId);
+            remove(incoming, friendId, userId);
+            remove(acceptedIncoming, friendId, userId);
+            remove(acceptedOutgoing, userId, friendId);
+        }
+    }
+
+    private static void insert(Map<Long, long[]> adjacency, long key, long id) {
+        adjacency.compute(key, (k, ids) -> LongArrays.insert(ids == null ? LongArrays.EMPTY : ids, id));
+    }
+
+    private static void remove(Map<Long, long[]> adjacency, long key, long id) {
+        adjacency.computeIfPresent(key, (k, ids) -> {
+            long[] result = LongArrays.remove(ids, id);
+            return result.length == 0 ? null : result;
+        });
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Suggestion {
+        private final long userId;
+        private final int mutualFriends;
+    }
+}
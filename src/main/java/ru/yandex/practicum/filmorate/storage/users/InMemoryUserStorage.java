@@ -24,6 +24,16 @@ public class InMemoryUserStorage implements UserStorage {
         return Optional.ofNullable(users.get(id));
     }
 
+    @Override
+    public boolean existsUser(long id) {
+        return users.containsKey(id);
+    }
+
+    @Override
+    public Optional<User> loadUserCredentials(long id) {
+        return loadUser(id);
+    }
+
     @Override
     public long saveUser(User user) {
         if (user.getId() == 0) user.setId(++userIdGenerator);
@@ -41,6 +51,14 @@ public class InMemoryUserStorage implements UserStorage {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public List<User> loadUsersByIds(List<Long> ids) {
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public void saveFriendshipRequest(long userId, long friendId, FriendshipStatus status) {
         Set<Long> likes = friends.get(userId);
@@ -72,6 +90,34 @@ public class InMemoryUserStorage implements UserStorage {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<User> loadCommonFriends(long userId, long otherUserId) {
+        Set<Long> otherFriends = friends.getOrDefault(otherUserId, Collections.emptySet());
+        return friends.getOrDefault(userId, Collections.emptySet()).stream()
+                .filter(otherFriends::contains)
+                .sorted()
+                .map(this::loadUser)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> loadFriendSuggestions(long userId, int limit) {
+        Set<Long> userFriends = friends.getOrDefault(userId, Collections.emptySet());
+        Map<Long, Long> mutualFriends = userFriends.stream()
+                .flatMap(friendId -> friends.getOrDefault(friendId, Collections.emptySet()).stream())
+                .filter(id -> id != userId && !userFriends.contains(id))
+                .collect(Collectors.groupingBy(id -> id, Collectors.counting()));
+        return mutualFriends.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(entry -> loadUser(entry.getKey()))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public boolean isNotExistEmail(String email) {
         return users.values().stream()
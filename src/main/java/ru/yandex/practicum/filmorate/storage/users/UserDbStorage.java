@@ -10,13 +10,13 @@ import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
 
 @Repository("userStorage")
 public class UserDbStorage implements UserStorage {
 
+    private static final int IDS_CHUNK_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
 
     @Autowired
@@ -30,6 +30,18 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sqlQuery, new BeanPropertyRowMapper<>(User.class), id).stream().findAny();
     }
 
+    @Override
+    public boolean existsUser(long id) {
+        String sqlQuery = "SELECT EXISTS (SELECT 1 FROM users WHERE id = ?);";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlQuery, Boolean.class, id));
+    }
+
+    @Override
+    public Optional<User> loadUserCredentials(long id) {
+        String sqlQuery = "SELECT email, login FROM users WHERE id = ?;";
+        return jdbcTemplate.query(sqlQuery, new BeanPropertyRowMapper<>(User.class), id).stream().findAny();
+    }
+
     @Override
     public long saveUser(User user) {
         String sqlQuery = "INSERT INTO users (login, name, email, birthday) VALUES (?, ?, ?, ?);";
@@ -65,6 +77,26 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sqlQuery, new BeanPropertyRowMapper<>(User.class));
     }
 
+    @Override
+    public List<User> loadUsersByIds(List<Long> ids) {
+        Map<Long, User> users = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IDS_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IDS_CHUNK_SIZE, ids.size()));
+            String sqlQuery = "SELECT id, login, name, email, birthday FROM users " +
+                    "WHERE id IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ");";
+            jdbcTemplate.query(sqlQuery, new BeanPropertyRowMapper<>(User.class), chunk.toArray())
+                    .forEach(user -> users.put(user.getId(), user));
+        }
+        List<User> ordered = new ArrayList<>(users.size());
+        for (Long id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                ordered.add(user);
+            }
+        }
+        return ordered;
+    }
+
     @Override
     public void saveFriendshipRequest(long userId, long friendId, FriendshipStatus status) {
         String sqlQuery = "INSERT INTO friends (user_id, friend_id, status) VALUES (?, ?, ?);";
@@ -110,6 +142,45 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sqlQuery, new BeanPropertyRowMapper<>(User.class), id, id);
     }
 
+    @Override
+    public List<User> loadCommonFriends(long userId, long otherUserId) {
+        String sqlFriendIds = "SELECT friend_id FROM friends WHERE user_id = ? " +
+                "UNION " +
+                "SELECT user_id FROM friends WHERE friend_id = ? AND status = 'ACCEPTED'";
+        String sqlQuery = "SELECT id, login, name, email, birthday " +
+                "FROM users " +
+                "WHERE id IN (" + sqlFriendIds + ") " +
+                "AND id IN (" + sqlFriendIds + ") " +
+                "ORDER BY id ASC;";
+        return jdbcTemplate.query(
+                sqlQuery, new BeanPropertyRowMapper<>(User.class), userId, userId, otherUserId, otherUserId
+        );
+    }
+
+    @Override
+    public List<User> loadFriendSuggestions(long userId, int limit) {
+        String sqlFriendIds = "SELECT friend_id FROM friends WHERE user_id = ? " +
+                "UNION " +
+                "SELECT user_id FROM friends WHERE friend_id = ? AND status = 'ACCEPTED'";
+        // Each row says that friend_id is a friend of user_id, with the same rules as sqlFriendIds.
+        String sqlEdges = "SELECT user_id, friend_id FROM friends " +
+                "UNION " +
+                "SELECT friend_id, user_id FROM friends WHERE status = 'ACCEPTED'";
+        String sqlQuery = "SELECT u.id, u.login, u.name, u.email, u.birthday " +
+                "FROM (" + sqlEdges + ") AS e " +
+                "JOIN users u" +
+                "    ON u.id = e.user_id " +
+                "WHERE e.friend_id IN (" + sqlFriendIds + ") " +
+                "AND e.user_id <> ? " +
+                "AND e.user_id NOT IN (" + sqlFriendIds + ") " +
+                "GROUP BY u.id, u.login, u.name, u.email, u.birthday " +
+                "ORDER BY COUNT(e.friend_id) DESC, u.id ASC " +
+                "LIMIT ?;";
+        return jdbcTemplate.query(
+                sqlQuery, new BeanPropertyRowMapper<>(User.class), userId, userId, userId, userId, userId, limit
+        );
+    }
+
     @Override
     public boolean isNotExistEmail(String email) {
         String sqlQuery = "SELECT COUNT(email) FROM users WHERE email = ?";
@@ -126,6 +197,17 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public void deleteUser(long userId) {
+        String sqlLikes = "UPDATE films SET likes_count = likes_count - 1 " +
+                "WHERE id IN (SELECT film_id FROM likes WHERE user_id = ?)";
+        jdbcTemplate.update(sqlLikes, userId);
+        String sqlRatings = "UPDATE reviews r " +
+                "SET useful = useful - (" +
+                "    SELECT CASE WHEN rr.useful THEN 1 ELSE -1 END" +
+                "    FROM review_rating rr" +
+                "    WHERE rr.review_id = r.id AND rr.user_id = ?" +
+                ") " +
+                "WHERE id IN (SELECT review_id FROM review_rating WHERE user_id = ?)";
+        jdbcTemplate.update(sqlRatings, userId, userId);
         String sql = "DELETE FROM users WHERE id = ?";
         jdbcTemplate.update(sql, userId);
     }
@@ -9,12 +9,19 @@ public interface UserStorage {
 
     Optional<User> loadUser(long id);
 
+    boolean existsUser(long id);
+
+    // Only email and login are set.
+    Optional<User> loadUserCredentials(long id);
+
     long saveUser(User user);
 
     void updateUser(User user);
 
     List<User> loadUsers();
 
+    List<User> loadUsersByIds(List<Long> ids);
+
     void saveFriendshipRequest(long userId, long friendId, FriendshipStatus status);
 
     boolean isExistFriendship(long userId, long friendId);
@@ -25,6 +32,10 @@ public interface UserStorage {
 
     List<User> loadUserFriends(long userId);
 
+    List<User> loadCommonFriends(long userId, long otherUserId);
+
+    List<User> loadFriendSuggestions(long userId, int limit);
+
     boolean isNotExistEmail(String email);
 
     boolean isNotExistLogin(String login);
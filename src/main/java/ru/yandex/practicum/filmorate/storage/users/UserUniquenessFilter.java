@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage.users;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.CountingBloomFilter;
+
+import java.util.Locale;
+
+// A negative answer proves the email or login is free; positives must still be checked in the database.
+@Slf4j
+@Component
+public class UserUniquenessFilter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CountingBloomFilter emails;
+    private final CountingBloomFilter logins;
+    private volatile boolean ready;
+
+    @Autowired
+    public UserUniquenessFilter(
+            JdbcTemplate jdbcTemplate,
+            @Value("${filmorate.users.bloom.expected-users:100000}") int expectedUsers,
+            @Value("${filmorate.users.bloom.false-positive-rate:0.01}") double falsePositiveRate
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.emails = new CountingBloomFilter(expectedUsers, falsePositiveRate);
+        this.logins = new CountingBloomFilter(expectedUsers, falsePositiveRate);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        emails.clear();
+        logins.clear();
+        int[] users = new int[1];
+        jdbcTemplate.query("SELECT email, login FROM users;", rs -> {
+            emails.add(normalize(rs.getString("email")));
+            logins.add(normalize(rs.getString("login")));
+            users[0]++;
+        });
+        ready = true;
+        log.debug("Loaded emails and logins of {} users into the uniqueness filter.", users[0]);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public synchronized boolean mightContainEmail(String email) {
+        return emails.mightContain(normalize(email));
+    }
+
+    public synchronized boolean mightContainLogin(String login) {
+        return logins.mightContain(normalize(login));
+    }
+
+    public synchronized void addUser(String email, String login) {
+        emails.add(normalize(email));
+        logins.add(normalize(login));
+    }
+
+    public synchronized void removeUser(String email, String login) {
+        emails.remove(normalize(email));
+        logins.remove(normalize(login));
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Bloom filter of strings with 8-bit counters, so values can be removed. A counter that reached its maximum
+ * stays there: it may cost false positives but never a false negative. Not thread-safe.
+ */
+public class CountingBloomFilter {
+
+    private static final int MAX_COUNT = 0xFF;
+
+    private final byte[] counters;
+    private final int hashes;
+
+    public CountingBloomFilter(int expectedInsertions, double falsePositiveRate) {
+        int size = (int) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        counters = new byte[Math.max(64, size)];
+        hashes = Math.max(1, (int) Math.round((double) counters.length / Math.max(1, expectedInsertions) * Math.log(2)));
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashes; i++) {
+            int slot = slot(hash, i);
+            int count = counters[slot] & 0xFF;
+            if (count < MAX_COUNT) {
+                counters[slot] = (byte) (count + 1);
+            }
+        }
+    }
+
+    // Only values that were added may be removed, otherwise counters of other values are decremented.
+    public void remove(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashes; i++) {
+            int slot = slot(hash, i);
+            int count = counters[slot] & 0xFF;
+            if (count > 0 && count < MAX_COUNT) {
+                counters[slot] = (byte) (count - 1);
+            }
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashes; i++) {
+            if (counters[slot(hash, i)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(counters, (byte) 0);
+    }
+
+    private int slot(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return Math.floorMod(h1 + i * h2, counters.length);
+    }
+
+    // 64-bit FNV-1a over UTF-8 bytes with a murmur finalizer; the halves drive double hashing.
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
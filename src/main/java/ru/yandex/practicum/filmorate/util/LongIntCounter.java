@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing long to int counter without boxing. {@link Long#MIN_VALUE} is reserved as the empty slot marker.
+ */
+public class LongIntCounter {
+
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    public LongIntCounter() {
+        this(16);
+    }
+
+    public LongIntCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    public int increment(long key) {
+        return add(key, 1);
+    }
+
+    public int add(long key, int delta) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Key " + key + " is reserved.");
+        }
+        int slot = slot(keys, key);
+        if (keys[slot] == FREE) {
+            keys[slot] = key;
+            size++;
+            values[slot] = delta;
+            if (size * 2 > keys.length) {
+                grow();
+            }
+            return delta;
+        }
+        values[slot] += delta;
+        return values[slot];
+    }
+
+    public int get(long key) {
+        if (key == FREE) {
+            return 0;
+        }
+        int slot = slot(keys, key);
+        return keys[slot] == FREE ? 0 : values[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                visitor.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, FREE);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public interface Visitor {
+        void accept(long key, int value);
+    }
+}
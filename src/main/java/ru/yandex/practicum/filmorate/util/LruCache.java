@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded map that evicts the least recently used entry. All operations are synchronized.
+ * A loader that takes {@link #stamp()} before reading the source and stores with {@link #put(Object, Object, long)}
+ * never caches a value that an invalidation issued during the read made stale.
+ */
+public class LruCache<K, V> {
+
+    private final Map<K, V> entries;
+    private long invalidations;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public LruCache(int capacity) {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    // Neither counts as a hit or miss nor refreshes the entry, for existence checks that don't use the value.
+    public synchronized boolean containsKey(K key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized long stamp() {
+        return invalidations;
+    }
+
+    public synchronized boolean put(K key, V value, long stamp) {
+        if (stamp != invalidations) {
+            return false;
+        }
+        entries.put(key, value);
+        return true;
+    }
+
+    public synchronized void invalidate(K key) {
+        invalidations++;
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        invalidations++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.*;
+
+/**
+ * Case-insensitive substring index over short texts keyed by id. Not thread-safe.
+ * Queries of three or more characters intersect the posting lists of their trigrams and
+ * verify the candidates. Shorter queries have no trigrams and scan every stored text.
+ */
+public class TrigramIndex {
+
+    private final Map<Long, long[]> postings = new HashMap<>();
+    private final Map<Long, String> texts = new HashMap<>();
+
+    // Replaces the whole index; posting lists are collected unsorted and sorted once instead of per insert.
+    public void load(Map<Long, String> entries) {
+        clear();
+        Map<Long, Postings> collected = new HashMap<>();
+        for (Map.Entry<Long, String> entry : entries.entrySet()) {
+            String normalized = normalize(entry.getValue());
+            texts.put(entry.getKey(), normalized);
+            for (long trigram : trigrams(normalized)) {
+                collected.computeIfAbsent(trigram, k -> new Postings()).add(entry.getKey());
+            }
+        }
+        collected.forEach((trigram, ids) -> postings.put(trigram, ids.toSortedArray()));
+    }
+
+    public void put(long id, String text) {
+        remove(id);
+        String normalized = normalize(text);
+        texts.put(id, normalized);
+        for (long trigram : trigrams(normalized)) {
+            postings.merge(trigram, new long[]{id}, (ids, ignored) -> LongArrays.insert(ids, id));
+        }
+    }
+
+    public void remove(long id) {
+        String text = texts.remove(id);
+        if (text == null) {
+            return;
+        }
+        for (long trigram : trigrams(text)) {
+            long[] ids = LongArrays.remove(postings.getOrDefault(trigram, LongArrays.EMPTY), id);
+            if (ids.length == 0) {
+                postings.remove(trigram);
+            } else {
+                postings.put(trigram, ids);
+            }
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+        texts.clear();
+    }
+
+    public int size() {
+        return texts.size();
+    }
+
+    public long[] search(String query) {
+        String normalized = normalize(query);
+        if (normalized.length() < 3) {
+            return texts.entrySet().stream()
+                    .filter(entry -> entry.getValue().contains(normalized))
+                    .mapToLong(Map.Entry::getKey)
+                    .sorted()
+                    .toArray();
+        }
+        List<long[]> lists = new ArrayList<>();
+        for (long trigram : trigrams(normalized)) {
+            long[] ids = postings.get(trigram);
+            if (ids == null) {
+                return LongArrays.EMPTY;
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(ids -> ids.length));
+        long[] candidates = lists.get(0);
+        for (int i = 1; i < lists.size() && candidates.length > 0; i++) {
+            candidates = LongArrays.intersect(candidates, lists.get(i));
+        }
+        return Arrays.stream(candidates)
+                .filter(id -> texts.get(id).contains(normalized))
+                .toArray();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<Long> trigrams(String text) {
+        Set<Long> result = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            result.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return result;
+    }
+
+    private static final class Postings {
+
+        private long[] ids = new long[4];
+        private int size;
+
+        private void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        private long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(ids, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
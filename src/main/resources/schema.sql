@@ -15,12 +15,18 @@ CREATE TABLE IF NOT EXISTS films (
     release_date DATE NOT NULL,
     duration     BIGINT NOT NULL,
     mpa_id       BIGINT REFERENCES mpa(id) ON DELETE NO ACTION,
-    genre_id     BIGINT REFERENCES genres(id) ON DELETE SET NULL
+    genre_id     BIGINT REFERENCES genres(id) ON DELETE SET NULL,
+    likes_count  BIGINT DEFAULT 0 NOT NULL
 );
 
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count BIGINT DEFAULT 0 NOT NULL;
+
 CREATE UNIQUE INDEX IF NOT EXISTS film_id_uniq_index
     ON films (id);
 
+CREATE INDEX IF NOT EXISTS films_likes_count_index
+    ON films (likes_count DESC, id);
+
 CREATE TABLE IF NOT EXISTS films_genres (
     film_id  INTEGER REFERENCES films (id) ON DELETE CASCADE,
     genre_id INTEGER REFERENCES genres (id) ON DELETE CASCADE
@@ -69,11 +75,19 @@ CREATE TABLE IF NOT EXISTS reviews (
     film_id     BIGINT REFERENCES films (id) ON DELETE CASCADE,
     user_id     BIGINT REFERENCES users (id) ON DELETE CASCADE,
     is_positive BOOLEAN DEFAULT FALSE NOT NULL,
-    content     TEXT NOT NULL
+    content     TEXT NOT NULL,
+    useful      BIGINT DEFAULT 0 NOT NULL
 );
 
-CREATE INDEX IF NOT EXISTS reviews_film_id_index
-    ON reviews (film_id);
+ALTER TABLE reviews ADD COLUMN IF NOT EXISTS useful BIGINT DEFAULT 0 NOT NULL;
+
+DROP INDEX IF EXISTS reviews_film_id_index;
+
+CREATE INDEX IF NOT EXISTS reviews_film_id_useful_index
+    ON reviews (film_id, useful DESC, id);
+
+CREATE INDEX IF NOT EXISTS reviews_useful_index
+    ON reviews (useful DESC, id);
 
 CREATE TABLE IF NOT EXISTS review_rating (
     review_id BIGINT REFERENCES reviews (id) ON DELETE CASCADE,
@@ -89,4 +103,14 @@ CREATE TABLE IF NOT EXISTS feeds (
     event_type  VARCHAR(16),
     operation   VARCHAR(16),
     entity_id   BIGINT
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS feeds_user_id_event_id_index
+    ON feeds (user_id, event_id);
+
+CREATE TABLE IF NOT EXISTS feed_archive_state (
+    id               INTEGER PRIMARY KEY,
+    archive_id       VARCHAR(36) NOT NULL,
+    start_watermark  BIGINT NOT NULL,
+    watermark        BIGINT NOT NULL
+);
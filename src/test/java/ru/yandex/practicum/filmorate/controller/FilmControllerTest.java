@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,7 +9,18 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -18,6 +30,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc
 class FilmControllerTest {
 
+    private static final long UNKNOWN_ID = 999_999;
+
     private final MockMvc mockMvc;
 
     @Autowired
@@ -206,4 +220,221 @@ class FilmControllerTest {
                 .andExpect(jsonPath("$.releaseDate").value("2000-03-14"))
                 .andExpect(jsonPath("$.duration").value(191));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("GET films page with next cursor at /films")
+    public void shouldReturnFilmsPageWithNextCursor() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\": \"Monty Python's Life of Brian\", " +
+                                    "\"description\": \"Brian is born on the first Christmas\", " +
+                                    "\"releaseDate\": \"1979-08-17\"," +
+                                    "\"duration\": 94," +
+                                    "\"mpa\": {\"id\": 4}}"))
+                    .andExpect(status().isCreated());
+        }
+        MvcResult firstPage = mockMvc.perform(get("/films?afterId=0&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andReturn();
+        List<Long> firstIds = ids(firstPage);
+        assertEquals(String.valueOf(firstIds.get(0)), firstPage.getResponse().getHeader("X-Next-Cursor"));
+        mockMvc.perform(get("/films?afterId=" + firstIds.get(0) + "&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(greaterThan(firstIds.get(0).intValue())));
+    }
+
+    @Test
+    @DisplayName("GET all films by following next cursors at /films")
+    public void shouldReturnAllFilmsWithoutDuplicatesOrGapsByCursor() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\": \"Monty Python's The Meaning of Life\", " +
+                                    "\"description\": \"The meaning of life in several parts\", " +
+                                    "\"releaseDate\": \"1983-03-31\"," +
+                                    "\"duration\": 107," +
+                                    "\"mpa\": {\"id\": 4}}"))
+                    .andExpect(status().isCreated());
+        }
+        List<Long> allIds = ids(mockMvc.perform(get("/films?afterId=0&limit=1000"))
+                .andExpect(status().isOk())
+                .andReturn());
+        List<Long> pagedIds = new ArrayList<>();
+        String cursor = "0";
+        while (cursor != null) {
+            MvcResult page = mockMvc.perform(get("/films?afterId=" + cursor + "&limit=2"))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            pagedIds.addAll(ids(page));
+            cursor = page.getResponse().getHeader("X-Next-Cursor");
+        }
+        assertEquals(allIds, pagedIds);
+        assertEquals(new ArrayList<>(new TreeSet<>(pagedIds)), pagedIds);
+    }
+
+    @Test
+    @DisplayName("GET all films with genres and directors as NDJSON at /films/export")
+    public void shouldExportAllFilmsAsNdjson() throws Exception {
+        MvcResult director = mockMvc.perform(post("/directors")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Terry Jones\"}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        long directorId = ((Number) JsonPath.read(director.getResponse().getContentAsString(), "$.id")).longValue();
+        MvcResult film = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Erik the Viking\", " +
+                                "\"description\": \"Erik sets out to wake the gods\", " +
+                                "\"releaseDate\": \"1989-08-27\"," +
+                                "\"duration\": 107," +
+                                "\"mpa\": {\"id\": 2}," +
+                                "\"genres\": [{\"id\": 1}, {\"id\": 2}]," +
+                                "\"directors\": [{\"id\": " + directorId + "}]}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        long filmId = ((Number) JsonPath.read(film.getResponse().getContentAsString(), "$.id")).longValue();
+
+        MvcResult export = mockMvc.perform(get("/films/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(export))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        List<Long> exportedIds = new ArrayList<>();
+        for (String line : body.lines().collect(Collectors.toList())) {
+            long id = ((Number) JsonPath.read(line, "$.id")).longValue();
+            exportedIds.add(id);
+            if (id == filmId) {
+                assertEquals(List.of(1, 2), JsonPath.read(line, "$.genres[*].id"));
+                assertEquals(List.of((int) directorId), JsonPath.read(line, "$.directors[*].id"));
+            }
+        }
+        assertEquals(ids(mockMvc.perform(get("/films?afterId=0&limit=1000")).andReturn()), exportedIds);
+    }
+
+    @Test
+    @DisplayName("PUT and DELETE like of unknown film or user at /films/{id}/like/{userId}")
+    public void shouldReturnNotFoundForLikeOfUnknownFilmOrUser() throws Exception {
+        long filmId = createFilm("Probed Film");
+        long userId = createUser("like-probe");
+
+        mockMvc.perform(put("/films/" + UNKNOWN_ID + "/like/" + userId)).andExpect(status().isNotFound());
+        mockMvc.perform(put("/films/" + filmId + "/like/" + UNKNOWN_ID)).andExpect(status().isNotFound());
+        mockMvc.perform(delete("/films/" + UNKNOWN_ID + "/like/" + userId)).andExpect(status().isNotFound());
+        mockMvc.perform(delete("/films/" + filmId + "/like/" + UNKNOWN_ID)).andExpect(status().isNotFound());
+
+        mockMvc.perform(put("/films/" + filmId + "/like/" + userId)).andExpect(status().isOk());
+        mockMvc.perform(delete("/films/" + filmId + "/like/" + userId)).andExpect(status().isNoContent());
+    }
+
+    @Test
+    @DisplayName("POST create films in request order at /films/batch")
+    public void shouldCreateFilmsInBatchInRequestOrder() throws Exception {
+        MvcResult result = mockMvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + filmJson("Batch First", "\"genres\": [{\"id\": 1}]") + ", " +
+                                filmJson("Batch Second", null) + ", " +
+                                filmJson("Batch Third", "\"genres\": [{\"id\": 2}, {\"id\": 2}]") + "]"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        List<Number> ids = JsonPath.read(result.getResponse().getContentAsString(), "$");
+        assertEquals(3, ids.size());
+
+        mockMvc.perform(get("/films/" + ids.get(0)))
+                .andExpect(jsonPath("$.name").value("Batch First"))
+                .andExpect(jsonPath("$.genres[*].id", contains(1)));
+        mockMvc.perform(get("/films/" + ids.get(1))).andExpect(jsonPath("$.name").value("Batch Second"));
+        mockMvc.perform(get("/films/" + ids.get(2)))
+                .andExpect(jsonPath("$.name").value("Batch Third"))
+                .andExpect(jsonPath("$.genres[*].id", contains(2)));
+        assertTrue(ids.get(0).longValue() < ids.get(1).longValue());
+        assertTrue(ids.get(1).longValue() < ids.get(2).longValue());
+    }
+
+    @Test
+    @DisplayName("POST oversized batch or batch with a missing film at /films/batch")
+    public void shouldRejectOversizedOrIncompleteBatch() throws Exception {
+        String films = IntStream.range(0, 1001)
+                .mapToObj(i -> filmJson("Oversized " + i, null))
+                .collect(Collectors.joining(", ", "[", "]"));
+        mockMvc.perform(post("/films/batch").contentType(MediaType.APPLICATION_JSON).content(films))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + filmJson("Before Null", null) + ", null]"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + filmJson("Without Genre Id", "\"genres\": [{}]") + "]"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/search").param("query", "Before Null").param("by", "title"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+    }
+
+    @Test
+    @DisplayName("POST batch with unknown MPA, genre or director at /films/batch")
+    public void shouldReturnNotFoundForUnknownReferencesInBatch() throws Exception {
+        mockMvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + filmJson("Unknown Mpa", null).replace("\"mpa\": {\"id\": 1}",
+                                "\"mpa\": {\"id\": " + UNKNOWN_ID + "}") + "]"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + filmJson("Unknown Genre", "\"genres\": [{\"id\": " + UNKNOWN_ID + "}]") + "]"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + filmJson("Unknown Director",
+                                "\"directors\": [{\"id\": " + UNKNOWN_ID + "}]") + "]"))
+                .andExpect(status().isNotFound());
+    }
+
+    private static String filmJson(String name, String extra) {
+        return "{\"name\": \"" + name + "\", " +
+                "\"description\": \"Film description\", " +
+                "\"releaseDate\": \"1990-01-01\"," +
+                "\"duration\": 100," +
+                (extra == null ? "" : extra + ", ") +
+                "\"mpa\": {\"id\": 1}}";
+    }
+
+    private long createFilm(String name) throws Exception {
+        MvcResult result = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"" + name + "\", " +
+                                "\"description\": \"Film description\", " +
+                                "\"releaseDate\": \"1990-01-01\"," +
+                                "\"duration\": 100," +
+                                "\"mpa\": {\"id\": 1}}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        return ((Number) JsonPath.read(result.getResponse().getContentAsString(), "$.id")).longValue();
+    }
+
+    private long createUser(String login) throws Exception {
+        MvcResult result = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\": \"" + login + "@domen.com\", " +
+                                "\"login\": \"" + login + "\", " +
+                                "\"name\": \"User Name\"," +
+                                "\"birthday\": \"1990-04-01\"}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        return ((Number) JsonPath.read(result.getResponse().getContentAsString(), "$.id")).longValue();
+    }
+
+    private static List<Long> ids(MvcResult result) throws Exception {
+        List<Number> ids = JsonPath.read(result.getResponse().getContentAsString(), "$[*].id");
+        return ids.stream().map(Number::longValue).collect(Collectors.toList());
+    }
+}
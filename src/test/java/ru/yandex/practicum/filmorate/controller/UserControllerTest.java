@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,9 +9,15 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -18,6 +25,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc
 class UserControllerTest {
 
+    private static final long UNKNOWN_ID = 999_999;
+
     private final MockMvc mockMvc;
 
     @Autowired
@@ -137,4 +146,74 @@ class UserControllerTest {
                 .andExpect(status().is4xxClientError())
                 .andExpect(jsonPath("$.email").value("Email already in use."));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("GET replay missed events and stream new ones at /users/{id}/feed/stream")
+    public void shouldReplayMissedEventsAndStreamNewOnes() throws Exception {
+        long userId = createUser("stream-user");
+        long friendId = createUser("stream-friend");
+        mockMvc.perform(put("/users/" + userId + "/friends/" + friendId)).andExpect(status().isOk());
+        mockMvc.perform(delete("/users/" + userId + "/friends/" + friendId)).andExpect(status().isNoContent());
+        List<Number> missed = feedEventIds(userId);
+
+        MvcResult stream = mockMvc.perform(get("/users/" + userId + "/feed/stream")
+                        .header("Last-Event-ID", missed.get(0)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitEvent(stream, missed.get(1));
+
+        mockMvc.perform(put("/users/" + userId + "/friends/" + friendId)).andExpect(status().isOk());
+        List<Number> all = feedEventIds(userId);
+        awaitEvent(stream, all.get(all.size() - 1));
+
+        String body = stream.getResponse().getContentAsString();
+        assertFalse(body.contains("id:" + missed.get(0) + "\n"));
+        assertTrue(body.indexOf("id:" + missed.get(1) + "\n") < body.indexOf("id:" + all.get(2) + "\n"));
+    }
+
+    @Test
+    @DisplayName("Friendship, friend list, feed and recommendation requests of unknown users at /users/{id}")
+    public void shouldReturnNotFoundForUnknownUsers() throws Exception {
+        long userId = createUser("probe-user");
+
+        mockMvc.perform(put("/users/" + userId + "/friends/" + UNKNOWN_ID)).andExpect(status().isNotFound());
+        mockMvc.perform(put("/users/" + UNKNOWN_ID + "/friends/" + userId)).andExpect(status().isNotFound());
+        mockMvc.perform(put("/users/" + userId + "/friends/" + UNKNOWN_ID + "/confirm"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/users/" + userId + "/friends/" + UNKNOWN_ID)).andExpect(status().isNotFound());
+        mockMvc.perform(get("/users/" + UNKNOWN_ID + "/friends")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/users/" + UNKNOWN_ID + "/friends/suggestions")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/users/" + userId + "/friends/common/" + UNKNOWN_ID)).andExpect(status().isNotFound());
+        mockMvc.perform(get("/users/" + UNKNOWN_ID + "/feed/friends")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/users/" + UNKNOWN_ID + "/recommendations")).andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/users/" + userId + "/friends")).andExpect(status().isOk());
+    }
+
+    private long createUser(String login) throws Exception {
+        MvcResult result = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\": \"" + login + "@domen.com\", " +
+                                "\"login\": \"" + login + "\", " +
+                                "\"name\": \"User Name\"," +
+                                "\"birthday\": \"1990-04-01\"}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        return ((Number) JsonPath.read(result.getResponse().getContentAsString(), "$.id")).longValue();
+    }
+
+    private List<Number> feedEventIds(long userId) throws Exception {
+        MvcResult result = mockMvc.perform(get("/users/" + userId + "/feed"))
+                .andExpect(status().isOk())
+                .andReturn();
+        return JsonPath.read(result.getResponse().getContentAsString(), "$[*].eventId");
+    }
+
+    private static void awaitEvent(MvcResult stream, Number eventId) throws Exception {
+        String expected = "id:" + eventId + "\n";
+        for (int i = 0; i < 100 && !stream.getResponse().getContentAsString().contains(expected); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(stream.getResponse().getContentAsString().contains(expected), "No event #" + eventId + ".");
+    }
+}
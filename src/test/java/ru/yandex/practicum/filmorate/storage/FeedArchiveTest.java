@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.feeds.FeedArchive;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedArchiveTest {
+
+    private static final String ARCHIVE_ID = "archive";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Read archived events in both directions and after a restart")
+    void shouldReadEventsAfterRestart() throws IOException {
+        FeedArchive archive = new FeedArchive(directory.toString());
+        archive.reset(ARCHIVE_ID, 0);
+        archive.publish(write(archive, 3, feed(1, 1), feed(1, 3), feed(2, 2)));
+        archive.publish(write(archive, 5, feed(1, 5), feed(2, 4)));
+
+        assertThat(eventIds(archive.read(1, 0, Long.MAX_VALUE, 10, false))).containsExactly(1L, 3L, 5L);
+        assertThat(eventIds(archive.read(1, 0, Long.MAX_VALUE, 2, true))).containsExactly(5L, 3L);
+        assertThat(eventIds(archive.read(2, 2, 5, 10, false))).containsExactly(4L);
+
+        FeedArchive restarted = new FeedArchive(directory.toString());
+        assertThat(restarted.load(ARCHIVE_ID, 0, 5)).isTrue();
+        assertThat(restarted.getWatermark()).isEqualTo(5);
+        assertThat(eventIds(restarted.read(1, 0, Long.MAX_VALUE, 10, false))).containsExactly(1L, 3L, 5L);
+        assertThat(eventIds(restarted.read(2, 0, Long.MAX_VALUE, 10, true))).containsExactly(4L, 2L);
+    }
+
+    @Test
+    @DisplayName("Ignore an archive that doesn't match the database watermarks")
+    void shouldIgnoreMismatchedArchive() throws IOException {
+        FeedArchive archive = new FeedArchive(directory.toString());
+        archive.reset(ARCHIVE_ID, 0);
+        archive.publish(write(archive, 3, feed(1, 1), feed(1, 3)));
+
+        FeedArchive restarted = new FeedArchive(directory.toString());
+        assertThat(restarted.load(ARCHIVE_ID, 0, 7)).isFalse();
+        assertThat(restarted.getWatermark()).isZero();
+        assertThat(restarted.read(1, 0, Long.MAX_VALUE, 10, false)).isEmpty();
+        assertThat(restarted.load(ARCHIVE_ID, 1, 3)).isFalse();
+        assertThat(restarted.load("other", 0, 3)).isFalse();
+        assertThat(restarted.load("other", 3, 3)).isTrue();
+
+        assertThat(restarted.load(ARCHIVE_ID, 0, 3)).isTrue();
+        assertThat(eventIds(restarted.read(1, 0, Long.MAX_VALUE, 10, false))).containsExactly(1L, 3L);
+    }
+
+    @Test
+    @DisplayName("Drop segments of compactions the database didn't commit")
+    void shouldDropUncommittedSegments() throws IOException {
+        FeedArchive archive = new FeedArchive(directory.toString());
+        archive.reset(ARCHIVE_ID, 0);
+        archive.publish(write(archive, 3, feed(1, 1), feed(1, 3)));
+        FeedArchive.Segment discarded = write(archive, 5, feed(1, 5));
+        archive.publish(discarded);
+        archive.discard(discarded);
+        assertThat(archive.getWatermark()).isEqualTo(3);
+        assertThat(eventIds(archive.read(1, 0, Long.MAX_VALUE, 10, false))).containsExactly(1L, 3L);
+
+        write(archive, 6, feed(1, 6));
+        FeedArchive restarted = new FeedArchive(directory.toString());
+        assertThat(restarted.load(ARCHIVE_ID, 0, 3)).isTrue();
+        assertThat(eventIds(restarted.read(1, 0, Long.MAX_VALUE, 10, false))).containsExactly(1L, 3L);
+        assertThat(new FeedArchive(directory.toString()).load(ARCHIVE_ID, 0, 6)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Rewrite segments without the events of removed users")
+    void shouldPurgeUsers() throws IOException {
+        FeedArchive archive = new FeedArchive(directory.toString());
+        archive.reset(ARCHIVE_ID, 0);
+        archive.publish(write(archive, 3, feed(1, 1), feed(1, 3), feed(2, 2)));
+        archive.publish(write(archive, 5, feed(2, 4), feed(3, 5)));
+
+        for (FeedArchive.Segment segment : archive.getSegments()) {
+            archive.replace(segment, archive.rewrite(segment, userId -> userId != 2));
+        }
+        assertThat(archive.read(2, 0, Long.MAX_VALUE, 10, false)).isEmpty();
+        assertThat(eventIds(archive.read(1, 0, Long.MAX_VALUE, 10, false))).containsExactly(1L, 3L);
+        assertThat(eventIds(archive.read(3, 0, Long.MAX_VALUE, 10, false))).containsExactly(5L);
+
+        FeedArchive restarted = new FeedArchive(directory.toString());
+        assertThat(restarted.load(ARCHIVE_ID, 0, 5)).isTrue();
+        assertThat(restarted.read(2, 0, Long.MAX_VALUE, 10, false)).isEmpty();
+        assertThat(eventIds(restarted.read(1, 0, Long.MAX_VALUE, 10, false))).containsExactly(1L, 3L);
+        assertThat(eventIds(restarted.read(3, 0, Long.MAX_VALUE, 10, false))).containsExactly(5L);
+    }
+
+    // Feeds are sorted by user and event id, as the compaction appends them.
+    private static FeedArchive.Segment write(FeedArchive archive, long watermark, Feed... feeds) throws IOException {
+        List<Feed> sorted = List.of(feeds).stream()
+                .sorted(Comparator.comparing(Feed::getUserId).thenComparing(Feed::getEventId))
+                .collect(Collectors.toList());
+        try (FeedArchive.SegmentWriter writer = archive.newSegment(watermark)) {
+            for (Feed feed : sorted) {
+                writer.append(feed);
+            }
+            return writer.commit();
+        }
+    }
+
+    private static Feed feed(long userId, long eventId) {
+        return Feed.builder()
+                .userId(userId)
+                .eventId(eventId)
+                .timestamp(eventId * 1000)
+                .eventType(EventType.FRIEND.name())
+                .operation(Operation.ADD.name())
+                .entityId(userId + 100)
+                .build();
+    }
+
+    private static List<Long> eventIds(List<Feed> feeds) {
+        return feeds.stream().map(Feed::getEventId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,158 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.feeds.FeedArchive;
+import ru.yandex.practicum.filmorate.storage.feeds.FeedStorage;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "filmorate.feed.archive-dir=" + FeedStorageTest.ARCHIVE_DIR)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FeedStorageTest {
+
+    static final String ARCHIVE_DIR = "target/feed-archive";
+
+    private final FeedService feedService;
+    private final UserService userService;
+    private final FeedStorage feedStorage;
+    private final FeedArchive feedArchive;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Page the feed forwards and backwards by event id cursors")
+    void shouldPageFeedByCursors() {
+        long user = createUser("feed-cursor-1");
+        long friend = createUser("feed-cursor-2");
+        for (int i = 0; i < 3; i++) {
+            userService.addFriendship(user, friend);
+            userService.refuseFriendship(user, friend);
+        }
+        List<Long> all = eventIds(feedService.getNewsFeed(user, null, null, 100));
+        assertThat(all).hasSize(6).isSorted();
+
+        List<Long> forward = new ArrayList<>();
+        long after = 0;
+        List<Feed> page;
+        while (!(page = feedService.getNewsFeed(user, after, null, 4)).isEmpty()) {
+            forward.addAll(eventIds(page));
+            after = page.get(page.size() - 1).getEventId();
+        }
+        assertThat(forward).isEqualTo(all);
+
+        assertThat(eventIds(feedService.getNewsFeed(user, null, null, 2))).isEqualTo(all.subList(4, 6));
+        assertThat(eventIds(feedService.getNewsFeed(user, null, all.get(4), 2))).isEqualTo(all.subList(2, 4));
+        assertThat(eventIds(feedService.getNewsFeed(user, all.get(0), all.get(3), 100)))
+                .isEqualTo(all.subList(1, 3));
+    }
+
+    @Test
+    @DisplayName("Merge the newest events of all friends")
+    void shouldMergeNewestEventsOfFriends() {
+        long user = createUser("feed-merge-1");
+        long first = createUser("feed-merge-2");
+        long second = createUser("feed-merge-3");
+        long other = createUser("feed-merge-4");
+        userService.addFriendship(user, first);
+        userService.addFriendship(user, second);
+        for (int i = 0; i < 2; i++) {
+            userService.addFriendship(first, other);
+            userService.addFriendship(second, other);
+            userService.refuseFriendship(first, other);
+            userService.refuseFriendship(second, other);
+        }
+        List<Long> expected = new ArrayList<>(eventIds(feedService.getNewsFeed(first, null, null, 100)));
+        expected.addAll(eventIds(feedService.getNewsFeed(second, null, null, 100)));
+        expected.sort(Comparator.reverseOrder());
+
+        assertThat(eventIds(userService.getFriendsFeed(user, 5))).isEqualTo(expected.subList(0, 5));
+        assertThat(eventIds(userService.getFriendsFeed(user, 100))).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("Archive old events, read them through the feed, reload them and purge deleted users")
+    void shouldReadArchivedEventsThroughFeed() throws IOException {
+        long user = createUser("feed-archive-1");
+        long friend = createUser("feed-archive-2");
+        long other = createUser("feed-archive-3");
+        for (int i = 0; i < 2; i++) {
+            userService.addFriendship(user, friend);
+            userService.refuseFriendship(user, friend);
+        }
+        userService.addFriendship(friend, user);
+        List<Long> all = eventIds(feedService.getNewsFeed(user, null, null, 100));
+        List<Long> friendEvents = eventIds(feedService.getNewsFeed(friend, null, null, 100));
+        assertThat(all).hasSize(4);
+        assertThat(friendEvents).hasSize(1);
+
+        feedStorage.archiveFeeds(Instant.now().plusSeconds(1));
+        Map<String, Object> state = archiveState();
+        long watermark = ((Number) state.get("watermark")).longValue();
+        assertThat(watermark).isEqualTo(feedArchive.getWatermark()).isGreaterThanOrEqualTo(all.get(3));
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM feeds WHERE user_id IN (?, ?);", Long.class, user, friend
+        )).isZero();
+
+        assertThat(eventIds(feedService.getNewsFeed(user, null, null, 100))).isEqualTo(all);
+        assertThat(eventIds(feedService.getNewsFeed(user, all.get(0), null, 2))).isEqualTo(all.subList(1, 3));
+        userService.addFriendship(user, other);
+        List<Long> withHot = eventIds(feedService.getNewsFeed(user, null, null, 100));
+        assertThat(withHot).hasSize(5).startsWith(all.toArray(new Long[0])).isSorted();
+        assertThat(withHot.get(4)).isGreaterThan(watermark);
+
+        FeedArchive restarted = new FeedArchive(ARCHIVE_DIR);
+        assertThat(restarted.load((String) state.get("archive_id"),
+                ((Number) state.get("start_watermark")).longValue(), watermark)).isTrue();
+        assertThat(eventIds(restarted.read(user, 0, Long.MAX_VALUE, 100, false))).isEqualTo(all);
+        assertThat(restarted.load((String) state.get("archive_id"), 0, watermark + 1)).isFalse();
+
+        userService.deleteUser(friend);
+        feedStorage.archiveFeeds(Instant.EPOCH);
+        assertThat(feedArchive.read(friend, 0, Long.MAX_VALUE, 100, false)).isEmpty();
+        assertThat(eventIds(feedService.getNewsFeed(user, null, null, 100))).isEqualTo(withHot);
+
+        FeedArchive purged = new FeedArchive(ARCHIVE_DIR);
+        assertThat(purged.load((String) state.get("archive_id"),
+                ((Number) state.get("start_watermark")).longValue(), watermark)).isTrue();
+        assertThat(purged.read(friend, 0, Long.MAX_VALUE, 100, false)).isEmpty();
+        assertThat(eventIds(purged.read(user, 0, Long.MAX_VALUE, 100, false))).isEqualTo(all);
+    }
+
+    private Map<String, Object> archiveState() {
+        return jdbcTemplate.queryForMap(
+                "SELECT archive_id, start_watermark, watermark FROM feed_archive_state WHERE id = 1;"
+        );
+    }
+
+    private long createUser(String login) {
+        User user = new User();
+        user.setLogin(login);
+        user.setName(login);
+        user.setEmail(login + "@mail.ru");
+        user.setBirthday(LocalDate.parse("1990-01-01"));
+        return userService.createNewUser(user).getId();
+    }
+
+    private static List<Long> eventIds(List<Feed> feeds) {
+        return feeds.stream().map(Feed::getEventId).collect(Collectors.toList());
+    }
+}
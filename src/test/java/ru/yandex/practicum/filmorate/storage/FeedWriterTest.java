@@ -0,0 +1,135 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.feeds.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.feeds.FeedWriter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedWriterTest {
+
+    private final FakeFeedStorage storage = new FakeFeedStorage();
+    private final FeedWriter writer = new FeedWriter(storage, 100, 100, 3_600_000);
+
+    @AfterEach
+    void stopWriter() throws InterruptedException {
+        writer.shutdown();
+    }
+
+    @Test
+    @DisplayName("Keep a failed batch and save it in order on the next flush")
+    void shouldRetryFailedBatch() {
+        List<Feed> published = new ArrayList<>();
+        writer.addListener(published::add);
+        writer.submit(feed(1));
+        writer.submit(feed(2));
+        writer.submit(feed(3));
+
+        storage.failures = 1;
+        writer.flush();
+        assertThat(storage.saved).isEmpty();
+        assertThat(writer.getQueueDepth()).isEqualTo(3);
+        assertThat(writer.getFlushes()).isZero();
+
+        writer.flush();
+        assertThat(userIds(storage.saved)).containsExactly(1L, 2L, 3L);
+        assertThat(userIds(published)).containsExactly(1L, 2L, 3L);
+        assertThat(writer.getQueueDepth()).isZero();
+        assertThat(writer.getFlushes()).isEqualTo(1);
+        assertThat(writer.getFlushedEvents()).isEqualTo(3);
+        assertThat(writer.getAverageFlushMillis()).isNotNegative();
+    }
+
+    @Test
+    @DisplayName("Flush on the submitting thread when the queue is full")
+    void shouldFlushFullQueueOnSubmit() throws InterruptedException {
+        FeedWriter smallWriter = new FeedWriter(storage, 100, 2, 3_600_000);
+        try {
+            smallWriter.submit(feed(1));
+            smallWriter.submit(feed(2));
+            assertThat(storage.saved).isEmpty();
+            assertThat(smallWriter.getQueueDepth()).isEqualTo(2);
+
+            smallWriter.submit(feed(3));
+            assertThat(userIds(storage.saved)).containsExactly(1L, 2L);
+            assertThat(smallWriter.getQueueDepth()).isEqualTo(1);
+        } finally {
+            smallWriter.shutdown();
+        }
+        assertThat(userIds(storage.saved)).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    @DisplayName("Save the rest of a batch when one event violates a constraint")
+    void shouldDropOnlyRejectedEvents() {
+        storage.rejectedUserId = 2;
+        writer.submit(feed(1));
+        writer.submit(feed(2));
+        writer.flush();
+        assertThat(userIds(storage.saved)).containsExactly(1L);
+        assertThat(writer.getQueueDepth()).isZero();
+    }
+
+    private static Feed feed(long userId) {
+        return Feed.builder()
+                .timestamp(System.currentTimeMillis())
+                .userId(userId)
+                .eventType("LIKE")
+                .operation("ADD")
+                .entityId(1L)
+                .build();
+    }
+
+    private static List<Long> userIds(List<Feed> feeds) {
+        return feeds.stream().map(Feed::getUserId).collect(Collectors.toList());
+    }
+
+    private static class FakeFeedStorage implements FeedStorage {
+        private final List<Feed> saved = new ArrayList<>();
+        private int failures;
+        private long rejectedUserId = -1;
+        private long nextEventId = 1;
+
+        @Override
+        public void saveFeeds(List<Feed> feeds) {
+            if (failures > 0) {
+                failures--;
+                throw new TransientDataAccessResourceException("Connection lost.");
+            }
+            for (Feed feed : feeds) {
+                if (feed.getUserId() == rejectedUserId) {
+                    throw new DataIntegrityViolationException("Unknown user.");
+                }
+            }
+            for (Feed feed : feeds) {
+                feed.setEventId(nextEventId++);
+                saved.add(feed);
+            }
+        }
+
+        @Override
+        public List<Feed> getNewsFeed(long userId, Long afterEventId, Long beforeEventId, int limit) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public List<Feed> getNewestFeeds(List<Long> userIds, int perUser) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public int archiveFeeds(Instant before) {
+            return 0;
+        }
+    }
+}
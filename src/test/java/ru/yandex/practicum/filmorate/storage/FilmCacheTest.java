@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.films.FilmCache;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmCacheTest {
+
+    private final FilmCache cache = new FilmCache(10);
+
+    @Test
+    @DisplayName("Skip a film loaded before an invalidation and keep cached films private")
+    void shouldHonourStampAndCopy() {
+        long stamp = cache.stamp();
+        cache.invalidate(1L);
+        cache.put(film(1, "Stale"), stamp);
+        assertThat(cache.contains(1L)).isFalse();
+
+        cache.put(film(1, "Fresh"), cache.stamp());
+        Film cached = cache.get(1L);
+        cached.setName("Changed");
+        assertThat(cache.get(1L).getName()).isEqualTo("Fresh");
+
+        cache.invalidate(new long[]{1L});
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.contains(1L)).isFalse();
+    }
+
+    private static Film film(long id, String name) {
+        return Film.builder()
+                .id(id)
+                .name(name)
+                .description("Film description")
+                .duration(90L)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(Mpa.builder().id(1L).build())
+                .build();
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.films.FilmLikesIndex;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmLikesIndexTest {
+
+    private final FilmLikesIndex likesIndex;
+    private final FilmService filmService;
+    private final UserService userService;
+
+    @Test
+    @DisplayName("Recommend films of the nearest neighbour and follow like changes")
+    void shouldRecommendFilmsOfNeighbour() {
+        long watched = filmService.createNewFilm(film("Watched")).getId();
+        long unseen = filmService.createNewFilm(film("Unseen")).getId();
+        long user = userService.createNewUser(user("likes-index-1")).getId();
+        long neighbour = userService.createNewUser(user("likes-index-2")).getId();
+
+        filmService.addLikeFromUser(watched, user);
+        filmService.addLikeFromUser(watched, neighbour);
+        filmService.addLikeFromUser(unseen, neighbour);
+
+        assertThat(likesIndex.isReady()).isTrue();
+        assertThat(likesIndex.recommendFilms(user, 10)).containsExactly(unseen);
+        assertThat(likesIndex.commonFilms(user, neighbour)).containsExactly(watched);
+        assertThat(filmService.getRecommendation(user, -1)).extracting(Film::getId).containsExactly(unseen);
+
+        filmService.deleteLikeFromUser(unseen, neighbour);
+        assertThat(likesIndex.recommendFilms(user, 10)).isEmpty();
+    }
+
+    private static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Film description")
+                .duration(90L)
+                .releaseDate(LocalDate.parse("2010-01-01"))
+                .mpa(Mpa.builder().id(1L).build())
+                .build();
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setLogin(login);
+        user.setName(login);
+        user.setEmail(login + "@mail.ru");
+        user.setBirthday(LocalDate.parse("1990-01-01"));
+        return user;
+    }
+}
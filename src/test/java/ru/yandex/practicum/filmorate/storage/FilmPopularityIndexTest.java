@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.films.FilmPopularityIndex;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmPopularityIndexTest {
+
+    private static final int YEAR = 1901;
+
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmService filmService;
+    private final UserService userService;
+
+    @Test
+    @DisplayName("Order films of a year by likes and follow like changes")
+    void shouldOrderFilmsByLikes() {
+        long first = filmService.createNewFilm(film("First")).getId();
+        long second = filmService.createNewFilm(film("Second")).getId();
+        long user = userService.createNewUser(user("popularity-1")).getId();
+
+        assertThat(popularityIndex.isReady()).isTrue();
+        assertThat(popularityIndex.getPopularFilmIds(10, null, YEAR)).containsExactly(first, second);
+
+        filmService.addLikeFromUser(second, user);
+        assertThat(popularityIndex.getPopularFilmIds(10, null, YEAR)).containsExactly(second, first);
+        assertThat(popularityIndex.getPopularFilmIds(1, null, YEAR)).containsExactly(second);
+
+        filmService.deleteLikeFromUser(second, user);
+        assertThat(popularityIndex.getPopularFilmIds(10, null, YEAR)).containsExactly(first, second);
+    }
+
+    @Test
+    @DisplayName("Clamp a non-positive count of popular films")
+    void shouldClampNonPositiveCount() {
+        Film film = film("Clamped");
+        film.setReleaseDate(LocalDate.of(YEAR + 1, 1, 1));
+        filmService.createNewFilm(film);
+        assertThat(filmService.getPopularFilms(-5, null, null)).hasSize(1);
+    }
+
+    private static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Film description")
+                .duration(90L)
+                .releaseDate(LocalDate.of(YEAR, 1, 1))
+                .mpa(Mpa.builder().id(1L).build())
+                .build();
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setLogin(login);
+        user.setName(login);
+        user.setEmail(login + "@mail.ru");
+        user.setBirthday(LocalDate.parse("1990-01-01"));
+        return user;
+    }
+}
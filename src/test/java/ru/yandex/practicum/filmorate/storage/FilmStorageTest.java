@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.films.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.users.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmStorageTest {
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final UserService userService;
+    private final FilmService filmService;
+    private final DirectorService directorService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Keep likes counter after like, unlike and user delete")
+    void shouldKeepLikesCounter() {
+        long filmId = filmStorage.saveFilm(
+                Film.builder()
+                        .name("Counted Film")
+                        .description("Film description")
+                        .duration(100L)
+                        .releaseDate(LocalDate.parse("2001-01-01"))
+                        .mpa(Mpa.builder().id(1L).build())
+                        .build()
+        );
+        long firstUserId = userStorage.saveUser(user("likes-counter-1"));
+        long secondUserId = userStorage.saveUser(user("likes-counter-2"));
+
+        filmStorage.saveLikeFromUser(filmId, firstUserId);
+        filmStorage.saveLikeFromUser(filmId, secondUserId);
+        assertThat(likesCount(filmId)).isEqualTo(2);
+
+        filmStorage.deleteLikeFromUser(filmId, firstUserId);
+        assertThat(likesCount(filmId)).isEqualTo(1);
+
+        userService.deleteUser(secondUserId);
+        assertThat(likesCount(filmId)).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Load a film without MPA with a null MPA")
+    void shouldLoadFilmWithoutMpa() {
+        long filmId = filmStorage.saveFilm(
+                Film.builder()
+                        .name("Unrated Film")
+                        .description("Film description")
+                        .duration(100L)
+                        .releaseDate(LocalDate.parse("2001-01-01"))
+                        .mpa(Mpa.builder().id(1L).build())
+                        .build()
+        );
+        jdbcTemplate.update("UPDATE films SET mpa_id = NULL WHERE id = ?;", filmId);
+
+        assertThat(filmStorage.loadFilm(filmId)).get().extracting(Film::getMpa).isNull();
+    }
+
+    @Test
+    @DisplayName("Roll back every film of a batch when one of its rows fails")
+    void shouldRollBackFailedBatch() {
+        Director director = new Director();
+        director.setName("Vanished Director");
+        long directorId = directorService.createNewDirector(director).getId();
+        jdbcTemplate.update("DELETE FROM directors WHERE id = ?;", directorId);
+
+        Film first = batchFilm("Rolled Back First");
+        Film second = batchFilm("Rolled Back Second");
+        second.setDirectors(List.of(directorService.getDirectorById(directorId)));
+
+        assertThatThrownBy(() -> filmService.createFilms(List.of(first, second)))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM films WHERE name LIKE 'Rolled Back%';", Long.class
+        )).isZero();
+    }
+
+    private static Film batchFilm(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Film description")
+                .duration(100L)
+                .releaseDate(LocalDate.parse("2001-01-01"))
+                .mpa(Mpa.builder().id(1L).build())
+                .build();
+    }
+
+    private long likesCount(long filmId) {
+        return jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE id = ?;", Long.class, filmId);
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setLogin(login);
+        user.setName(login);
+        user.setEmail(login + "@mail.ru");
+        user.setBirthday(LocalDate.parse("1990-01-01"));
+        return user;
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.users.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.users.UserStorage;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FriendshipGraphTest {
+
+    private final FriendshipGraph friendshipGraph;
+    private final UserService userService;
+    private final UserStorage userStorage;
+
+    @Test
+    @DisplayName("Follow requests, confirmations and refusals like the friends table")
+    void shouldFollowFriendshipChanges() {
+        long first = createUser("graph-1");
+        long second = createUser("graph-2");
+
+        userService.addFriendship(first, second);
+        assertThat(friendshipGraph.getFriendIds(first)).containsExactly(second);
+        assertThat(friendshipGraph.getFriendIds(second)).isEmpty();
+
+        userService.confirmFriendship(second, first);
+        assertThat(friendshipGraph.getFriendIds(second)).containsExactly(first);
+        assertThat(friendshipGraph.getFriendIds(first)).containsExactly(second);
+        assertThat(userStorage.loadUserFriends(second)).extracting(User::getId).containsExactly(first);
+
+        userService.refuseFriendship(first, second);
+        assertThat(friendshipGraph.getFriendIds(first)).isEmpty();
+        assertThat(friendshipGraph.getFriendIds(second)).isEmpty();
+        assertThat(userStorage.loadUserFriends(second)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Drop edges of a deleted user and ignore late changes for it")
+    void shouldNotResurrectDeletedUser() {
+        long user = createUser("graph-3");
+        long deleted = createUser("graph-4");
+
+        userService.addFriendship(user, deleted);
+        userService.addFriendship(deleted, user);
+        userService.deleteUser(deleted);
+        assertThat(friendshipGraph.getFriendIds(user)).isEmpty();
+
+        friendshipGraph.putFriendship(user, deleted, true);
+        assertThat(friendshipGraph.getFriendIds(user)).isEmpty();
+        assertThat(friendshipGraph.isExistFriendship(user, deleted)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Suggest users who count a friend of the user among their own friends")
+    void shouldSuggestByMutualFriends() {
+        long user = createUser("graph-5");
+        long friend = createUser("graph-6");
+        long requester = createUser("graph-7");
+        long requested = createUser("graph-8");
+        long accepted = createUser("graph-9");
+        long otherFriend = createUser("graph-10");
+
+        userService.addFriendship(user, friend);
+        userService.addFriendship(requester, friend);
+        userService.addFriendship(friend, requested);
+        userService.addFriendship(friend, accepted);
+        userService.confirmFriendship(accepted, friend);
+
+        assertThat(friendshipGraph.suggestFriends(user, 10)).containsExactly(requester, accepted);
+        assertThat(userStorage.loadFriendSuggestions(user, 10)).extracting(User::getId)
+                .containsExactly(requester, accepted);
+        assertThat(friendshipGraph.suggestFriends(user, 1)).containsExactly(requester);
+
+        userService.addFriendship(user, otherFriend);
+        userService.addFriendship(accepted, otherFriend);
+        assertThat(friendshipGraph.suggestFriends(user, 10)).containsExactly(accepted, requester);
+        assertThat(userStorage.loadFriendSuggestions(user, 10)).extracting(User::getId)
+                .containsExactly(accepted, requester);
+    }
+
+    private long createUser(String login) {
+        User user = new User();
+        user.setLogin(login);
+        user.setName(login);
+        user.setEmail(login + "@mail.ru");
+        user.setBirthday(LocalDate.parse("1990-01-01"));
+        return userService.createNewUser(user).getId();
+    }
+}
@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReviewService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.films.ReviewStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ReviewStorageTest {
+
+    private final ReviewStorage reviewStorage;
+    private final ReviewService reviewService;
+    private final FilmService filmService;
+    private final UserService userService;
+
+    @Test
+    @DisplayName("Keep the useful score in step with votes, vote removal and user delete")
+    void shouldKeepUsefulScore() {
+        long filmId = createFilm("Reviewed Film");
+        long author = createUser("review-useful-1");
+        long first = createUser("review-useful-2");
+        long second = createUser("review-useful-3");
+        long reviewId = createReview(filmId, author);
+
+        reviewService.addLikeFromUser(reviewId, first);
+        assertThat(useful(reviewId)).isEqualTo(1);
+        reviewService.addLikeFromUser(reviewId, first);
+        assertThat(useful(reviewId)).isEqualTo(1);
+        reviewService.addDislikeFromUser(reviewId, second);
+        assertThat(useful(reviewId)).isEqualTo(0);
+        reviewService.addDislikeFromUser(reviewId, first);
+        assertThat(useful(reviewId)).isEqualTo(-2);
+
+        reviewService.deleteLikeFromUser(reviewId, first);
+        assertThat(useful(reviewId)).isEqualTo(-2);
+        reviewService.deleteDislikeFromUser(reviewId, first);
+        assertThat(useful(reviewId)).isEqualTo(-1);
+
+        userService.deleteUser(second);
+        assertThat(useful(reviewId)).isEqualTo(0);
+        reviewService.addLikeFromUser(reviewId, first);
+        assertThat(useful(reviewId)).isEqualTo(1);
+
+        assertThat(reviewStorage.rebuildUsefulScores()).isZero();
+    }
+
+    @Test
+    @DisplayName("Count concurrent votes of one user once")
+    void shouldCountConcurrentVotesOnce() throws InterruptedException {
+        long filmId = createFilm("Concurrently Reviewed Film");
+        long author = createUser("review-race-1");
+        long voter = createUser("review-race-2");
+        long reviewId = createReview(filmId, author);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Void>> votes = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            votes.add(CompletableFuture.runAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                reviewService.addLikeFromUser(reviewId, voter);
+            }));
+        }
+        start.countDown();
+        CompletableFuture.allOf(votes.toArray(new CompletableFuture[0])).join();
+
+        assertThat(useful(reviewId)).isEqualTo(1);
+        assertThat(reviewStorage.rebuildUsefulScores()).isZero();
+    }
+
+    @Test
+    @DisplayName("Page all reviews by (useful, id) cursors without gaps or duplicates")
+    void shouldPageReviewsByCursors() {
+        long filmId = createFilm("Paged Reviews Film");
+        long author = createUser("review-page-1");
+        long voter = createUser("review-page-2");
+        for (int i = 0; i < 5; i++) {
+            long reviewId = createReview(filmId, author);
+            if (i % 2 == 0) {
+                reviewService.addLikeFromUser(reviewId, voter);
+            }
+        }
+        List<Long> all = reviewIds(reviewService.getReviews(null, 1000, null, null));
+
+        List<Long> paged = new ArrayList<>();
+        List<Review> page = reviewService.getReviews(null, 2, null, null);
+        while (!page.isEmpty()) {
+            paged.addAll(reviewIds(page));
+            Review last = page.get(page.size() - 1);
+            page = reviewService.getReviews(null, 2, (long) last.getUseful(), last.getReviewId());
+        }
+        assertThat(paged).isEqualTo(all);
+    }
+
+    private static List<Long> reviewIds(List<Review> reviews) {
+        return reviews.stream().map(Review::getReviewId).collect(Collectors.toList());
+    }
+
+    private int useful(long reviewId) {
+        return reviewService.getReviewById(reviewId).getUseful();
+    }
+
+    private long createReview(long filmId, long userId) {
+        return reviewService.createNewReview(Review.builder()
+                .content("Review content")
+                .isPositive(true)
+                .filmId(filmId)
+                .userId(userId)
+                .build()).getReviewId();
+    }
+
+    private long createFilm(String name) {
+        return filmService.createNewFilm(Film.builder()
+                .name(name)
+                .description("Film description")
+                .duration(100L)
+                .releaseDate(LocalDate.parse("2002-01-01"))
+                .mpa(Mpa.builder().id(1L).build())
+                .build()).getId();
+    }
+
+    private long createUser(String login) {
+        User user = new User();
+        user.setLogin(login);
+        user.setName(login);
+        user.setEmail(login + "@mail.ru");
+        user.setBirthday(LocalDate.parse("1990-01-01"));
+        return userService.createNewUser(user).getId();
+    }
+}
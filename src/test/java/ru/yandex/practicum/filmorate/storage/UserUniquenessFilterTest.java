@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.users.UserUniquenessFilter;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class UserUniquenessFilterTest {
+
+    private final UserUniquenessFilter uniquenessFilter;
+    private final UserService userService;
+
+    @Test
+    @DisplayName("Follow a rename through update and free the old email and login")
+    void shouldFollowRename() {
+        User user = userService.createNewUser(user("unique-old"));
+        assertThat(uniquenessFilter.isReady()).isTrue();
+        assertThat(uniquenessFilter.mightContainEmail("Unique-Old@mail.ru")).isTrue();
+        assertThat(userService.isNotExistLogin("unique-old")).isFalse();
+
+        User renamed = user("unique-new");
+        renamed.setId(user.getId());
+        userService.updateUser(renamed);
+        assertThat(uniquenessFilter.mightContainEmail("unique-new@mail.ru")).isTrue();
+        assertThat(uniquenessFilter.mightContainLogin("unique-new")).isTrue();
+        assertThat(userService.isNotExistEmail("unique-new@mail.ru")).isFalse();
+        assertThat(userService.isNotExistEmail("unique-old@mail.ru")).isTrue();
+        assertThat(userService.isNotExistLogin("unique-old")).isTrue();
+
+        User unchanged = user("unique-new");
+        unchanged.setId(user.getId());
+        unchanged.setName("Renamed");
+        userService.updateUser(unchanged);
+        assertThat(uniquenessFilter.mightContainEmail("unique-new@mail.ru")).isTrue();
+        assertThat(uniquenessFilter.mightContainLogin("unique-new")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Free the email and login of a deleted user")
+    void shouldForgetDeletedUser() {
+        User user = userService.createNewUser(user("unique-deleted"));
+        userService.deleteUser(user.getId());
+        assertThat(userService.isNotExistEmail("unique-deleted@mail.ru")).isTrue();
+        assertThat(userService.isNotExistLogin("unique-deleted")).isTrue();
+        assertThat(userService.createNewUser(user("unique-deleted")).getId()).isNotEqualTo(user.getId());
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setLogin(login);
+        user.setName(login);
+        user.setEmail(login + "@mail.ru");
+        user.setBirthday(LocalDate.parse("1990-01-01"));
+        return user;
+    }
+}
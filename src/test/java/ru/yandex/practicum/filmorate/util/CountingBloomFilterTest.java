@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountingBloomFilterTest {
+
+    @Test
+    @DisplayName("Keep every remaining value after removing others")
+    void shouldHaveNoFalseNegativesAfterRemove() {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("value-" + i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            filter.remove("value-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (i % 2 == 1) {
+                assertThat(filter.mightContain("value-" + i)).isTrue();
+            } else if (filter.mightContain("value-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(50);
+    }
+
+    @Test
+    @DisplayName("Never decrement a saturated counter")
+    void shouldKeepSaturatedCounters() {
+        CountingBloomFilter filter = new CountingBloomFilter(10, 0.01);
+        for (int i = 0; i < 300; i++) {
+            filter.add("hot");
+        }
+        filter.add("other");
+        for (int i = 0; i < 300; i++) {
+            filter.remove("hot");
+        }
+        assertThat(filter.mightContain("other")).isTrue();
+        assertThat(filter.mightContain("hot")).isTrue();
+
+        filter.clear();
+        assertThat(filter.mightContain("hot")).isFalse();
+        assertThat(filter.mightContain("other")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Count a value added twice until both copies are removed")
+    void shouldCountDuplicates() {
+        CountingBloomFilter filter = new CountingBloomFilter(10, 0.01);
+        filter.add("twice");
+        filter.add("twice");
+        filter.remove("twice");
+        assertThat(filter.mightContain("twice")).isTrue();
+        filter.remove("twice");
+        assertThat(filter.mightContain("twice")).isFalse();
+    }
+}
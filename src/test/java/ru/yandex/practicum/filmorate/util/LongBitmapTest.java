@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongBitmapTest {
+
+    @Test
+    @DisplayName("Add, remove and list values across sparse and dense chunks")
+    void shouldMatchSortedSet() {
+        Random random = new Random(42);
+        LongBitmap bitmap = new LongBitmap();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            long value = random.nextInt(3) == 0 ? random.nextInt(1 << 20) : random.nextInt(8192);
+            assertThat(bitmap.add(value)).isEqualTo(expected.add(value));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            long value = random.nextInt(8192);
+            assertThat(bitmap.remove(value)).isEqualTo(expected.remove(value));
+        }
+        assertThat(bitmap.cardinality()).isEqualTo(expected.size());
+        assertThat(bitmap.toArray()).containsExactly(expected.stream().mapToLong(Long::longValue).toArray());
+        assertThat(bitmap.contains(expected.first())).isTrue();
+        assertThat(bitmap.contains(1L << 40)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Intersect sparse and dense bitmaps")
+    void shouldIntersect() {
+        LongBitmap dense = new LongBitmap();
+        for (long value = 0; value < 10_000; value++) {
+            dense.add(value);
+        }
+        LongBitmap sparse = LongBitmap.of(3, 5000, 9999, 10_000, 1L << 33);
+        assertThat(dense.and(sparse).toArray()).containsExactly(3, 5000, 9999);
+        assertThat(sparse.and(dense).toArray()).containsExactly(3, 5000, 9999);
+        assertThat(dense.and(dense).cardinality()).isEqualTo(10_000);
+        assertThat(dense.and(new LongBitmap()).isEmpty()).isTrue();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LruCacheTest {
+
+    @Test
+    @DisplayName("Drop a value loaded across an invalidation of any key")
+    void shouldRejectStalePut() {
+        LruCache<Long, String> cache = new LruCache<>(10);
+        long stamp = cache.stamp();
+        cache.invalidate(2L);
+        assertThat(cache.put(1L, "stale", stamp)).isFalse();
+        assertThat(cache.get(1L)).isNull();
+
+        long fresh = cache.stamp();
+        assertThat(cache.put(1L, "fresh", fresh)).isTrue();
+        assertThat(cache.get(1L)).isEqualTo("fresh");
+
+        cache.clear();
+        assertThat(cache.put(2L, "stale", fresh)).isFalse();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Remove an invalidated value")
+    void shouldInvalidate() {
+        LruCache<Long, String> cache = new LruCache<>(10);
+        cache.put(1L, "first", cache.stamp());
+        cache.put(2L, "second", cache.stamp());
+        cache.invalidate(1L);
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.get(2L)).isEqualTo("second");
+    }
+
+    @Test
+    @DisplayName("Evict the least recently used value and count hits, misses and evictions")
+    void shouldEvictLeastRecentlyUsed() {
+        LruCache<Long, String> cache = new LruCache<>(2);
+        cache.put(1L, "first", cache.stamp());
+        cache.put(2L, "second", cache.stamp());
+        assertThat(cache.get(1L)).isEqualTo("first");
+        cache.put(3L, "third", cache.stamp());
+
+        assertThat(cache.containsKey(2L)).isFalse();
+        assertThat(cache.containsKey(1L)).isTrue();
+        assertThat(cache.get(3L)).isEqualTo("third");
+        assertThat(cache.get(2L)).isNull();
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Check a key without counting it or refreshing its recency")
+    void shouldContainWithoutTouching() {
+        LruCache<Long, String> cache = new LruCache<>(2);
+        cache.put(1L, "first", cache.stamp());
+        cache.put(2L, "second", cache.stamp());
+        assertThat(cache.containsKey(1L)).isTrue();
+        assertThat(cache.containsKey(5L)).isFalse();
+        assertThat(cache.getHits()).isZero();
+        assertThat(cache.getMisses()).isZero();
+
+        cache.put(3L, "third", cache.stamp());
+        assertThat(cache.containsKey(1L)).isFalse();
+        assertThat(cache.containsKey(2L)).isTrue();
+    }
+}
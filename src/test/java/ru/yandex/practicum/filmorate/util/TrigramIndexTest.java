@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrigramIndexTest {
+
+    @Test
+    @DisplayName("Find loaded and updated texts by case-insensitive substring")
+    void shouldFindBySubstring() {
+        TrigramIndex index = new TrigramIndex();
+        index.load(Map.of(1L, "The Holy Grail", 2L, "Life of Brian", 3L, "The Meaning of Life"));
+
+        assertThat(index.search("LIFE")).containsExactly(2, 3);
+        assertThat(index.search("holy g")).containsExactly(1);
+        assertThat(index.search("grails")).isEmpty();
+
+        index.put(4L, "Life Aquatic");
+        index.put(2L, "Brian");
+        assertThat(index.search("life")).containsExactly(3, 4);
+
+        index.remove(3L);
+        assertThat(index.search("life")).containsExactly(4);
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Scan texts for queries shorter than a trigram")
+    void shouldScanForShortQueries() {
+        TrigramIndex index = new TrigramIndex();
+        index.load(Map.of(1L, "Jaws", 2L, "Alien", 3L, "Up"));
+
+        assertThat(index.search("a")).containsExactly(1, 2);
+        assertThat(index.search("UP")).containsExactly(3);
+        assertThat(index.search("")).containsExactly(1, 2, 3);
+    }
+}